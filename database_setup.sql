@@ -11,13 +11,36 @@ create table if not exists user (
     password varchar(255) not null,
     firstName varchar(255) not null,
     lastName varchar(255) not null,
+    -- Time of the user's latest post, kept by createPost; 1970-01-01 means never posted.
+    last_post_at datetime not null default '1970-01-01 00:00:00',
     primary key (userId),
     unique (username),
+    index idx_user_last_post (last_post_at, userId),
     constraint userName_min_length check (char_length(trim(userName)) >= 2),
     constraint firstName_min_length check (char_length(trim(firstName)) >= 2),
     constraint lastName_min_length check (char_length(trim(lastName)) >= 2)
 );
 
+-- Add last_post_at and its index to a user table created before they existed.
+-- MySQL has no ADD COLUMN IF NOT EXISTS, so check information_schema first.
+SET @ddl = IF(
+    (SELECT COUNT(*) FROM information_schema.columns
+     WHERE table_schema = DATABASE() AND table_name = 'user' AND column_name = 'last_post_at') = 0,
+    'ALTER TABLE user ADD COLUMN last_post_at datetime not null default ''1970-01-01 00:00:00''',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'user' AND index_name = 'idx_user_last_post') = 0,
+    'ALTER TABLE user ADD INDEX idx_user_last_post (last_post_at, userId)',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
 -- Posts
 CREATE TABLE IF NOT EXISTS post (
   post_id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -25,7 +48,7 @@ CREATE TABLE IF NOT EXISTS post (
   content VARCHAR(280) NOT NULL,
   created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
   CONSTRAINT fk_post_user FOREIGN KEY (user_id) REFERENCES user(userId) ON DELETE CASCADE,
-  INDEX idx_post_user_created (user_id, created_at DESC),
+  INDEX idx_post_user_created (user_id, created_at DESC, post_id DESC),
   INDEX idx_post_created (created_at DESC)
 );
 
@@ -57,6 +80,7 @@ CREATE TABLE IF NOT EXISTS `like` (
   post_id BIGINT NOT NULL,
   created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (user_id, post_id),
+  INDEX idx_like_created (created_at),
   CONSTRAINT fk_like_user FOREIGN KEY (user_id) REFERENCES user(userId) ON DELETE CASCADE,
   CONSTRAINT fk_like_post FOREIGN KEY (post_id) REFERENCES post(post_id) ON DELETE CASCADE
 );
@@ -85,3 +109,111 @@ CREATE TABLE IF NOT EXISTS post_hashtag (
   CONSTRAINT fk_ph_post FOREIGN KEY (post_id) REFERENCES post(post_id) ON DELETE CASCADE,
   CONSTRAINT fk_ph_hashtag FOREIGN KEY (hashtag_id) REFERENCES hashtag(hashtag_id) ON DELETE CASCADE
 );
+
+
+-- Post engagement counters, one row per post.
+-- Kept current by the like, bookmark and comment write paths so reads
+-- join a single row instead of aggregating the like and comment tables.
+CREATE TABLE IF NOT EXISTS post_stats (
+  post_id BIGINT PRIMARY KEY,
+  likes_count INT NOT NULL DEFAULT 0,
+  comments_count INT NOT NULL DEFAULT 0,
+  bookmarks_count INT NOT NULL DEFAULT 0,
+  -- LN(1 + likes + 2 * comments) + UNIX_TIMESTAMP(post created_at) / tau, see HotScoreService.
+  hot_score DOUBLE NOT NULL DEFAULT 0,
+  -- Last change to likes or comments; the hot scorer only rescores rows changed since its last run.
+  engaged_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_post_stats_hot (hot_score DESC),
+  INDEX idx_post_stats_engaged (engaged_at),
+  CONSTRAINT fk_ps_post FOREIGN KEY (post_id) REFERENCES post(post_id) ON DELETE CASCADE
+);
+
+-- Backfill counters for posts that existed before post_stats.
+INSERT INTO post_stats (post_id, likes_count, comments_count, bookmarks_count)
+SELECT p.post_id,
+       (SELECT COUNT(*) FROM `like` l WHERE l.post_id = p.post_id),
+       (SELECT COUNT(*) FROM comment c WHERE c.post_id = p.post_id),
+       (SELECT COUNT(*) FROM bookmark b WHERE b.post_id = p.post_id)
+FROM post p
+ON DUPLICATE KEY UPDATE likes_count = VALUES(likes_count),
+                        comments_count = VALUES(comments_count),
+                        bookmarks_count = VALUES(bookmarks_count);
+
+-- Per-user counters shown in the profile header.
+-- Kept current by the follow, unfollow, post and like write paths so a
+-- profile reads one row instead of counting follow, post and like.
+CREATE TABLE IF NOT EXISTS user_stats (
+  user_id INT PRIMARY KEY,
+  followers_count INT NOT NULL DEFAULT 0,
+  following_count INT NOT NULL DEFAULT 0,
+  posts_count INT NOT NULL DEFAULT 0,
+  -- Likes on all of the user's posts.
+  likes_received INT NOT NULL DEFAULT 0,
+  CONSTRAINT fk_us_user FOREIGN KEY (user_id) REFERENCES user(userId) ON DELETE CASCADE
+);
+
+-- Backfill counters for users that existed before user_stats.
+INSERT INTO user_stats (user_id, followers_count, following_count, posts_count, likes_received)
+SELECT u.userId,
+       (SELECT COUNT(*) FROM follow f WHERE f.followee_id = u.userId),
+       (SELECT COUNT(*) FROM follow f WHERE f.follower_id = u.userId),
+       (SELECT COUNT(*) FROM post p WHERE p.user_id = u.userId),
+       (SELECT COUNT(*) FROM `like` l JOIN post p ON p.post_id = l.post_id WHERE p.user_id = u.userId)
+FROM user u
+ON DUPLICATE KEY UPDATE followers_count = VALUES(followers_count),
+                        following_count = VALUES(following_count),
+                        posts_count = VALUES(posts_count),
+                        likes_received = VALUES(likes_received);
+
+-- Materialized home timelines (fan-out on write).
+-- One row per (follower, post from a followee). createPost pushes rows here,
+-- follow backfills and unfollow trims, so the home feed is a range scan on the primary key.
+CREATE TABLE IF NOT EXISTS timeline (
+  user_id INT NOT NULL,
+  post_id BIGINT NOT NULL,
+  author_id INT NOT NULL,
+  created_at TIMESTAMP NOT NULL,
+  PRIMARY KEY (user_id, created_at, post_id),
+  INDEX idx_timeline_user_author (user_id, author_id),
+  CONSTRAINT fk_timeline_user FOREIGN KEY (user_id) REFERENCES user(userId) ON DELETE CASCADE,
+  CONSTRAINT fk_timeline_post FOREIGN KEY (post_id) REFERENCES post(post_id) ON DELETE CASCADE
+);
+
+-- Backfill timelines from existing follows.
+INSERT IGNORE INTO timeline (user_id, post_id, author_id, created_at)
+SELECT f.follower_id, p.post_id, p.user_id, p.created_at
+FROM follow f
+JOIN post p ON p.user_id = f.followee_id;
+
+-- Hourly rollups for the trending page, maintained by RollupService.
+-- Keyed by hour first so a window is one range scan.
+CREATE TABLE IF NOT EXISTS hashtag_usage_hourly (
+  hour_start DATETIME NOT NULL,
+  hashtag_id INT NOT NULL,
+  uses INT NOT NULL,
+  PRIMARY KEY (hour_start, hashtag_id),
+  CONSTRAINT fk_huh_hashtag FOREIGN KEY (hashtag_id) REFERENCES hashtag(hashtag_id) ON DELETE CASCADE
+);
+
+-- Likes received per post and hour (by like time, not post time).
+CREATE TABLE IF NOT EXISTS post_likes_hourly (
+  hour_start DATETIME NOT NULL,
+  post_id BIGINT NOT NULL,
+  likes INT NOT NULL,
+  PRIMARY KEY (hour_start, post_id),
+  CONSTRAINT fk_plh_post FOREIGN KEY (post_id) REFERENCES post(post_id) ON DELETE CASCADE
+);
+
+-- How far each rollup has got: hashtag_usage by post_id, post_likes by like
+-- time in epoch seconds. Starting at 0, the first runs backfill existing rows.
+CREATE TABLE IF NOT EXISTS rollup_watermark (
+  name VARCHAR(32) PRIMARY KEY,
+  position BIGINT NOT NULL
+);
+
+INSERT IGNORE INTO rollup_watermark (name, position) VALUES ('hashtag_usage', 0), ('post_likes', 0), ('hot_score', 0);
+
+-- Backfill user.last_post_at for posts that existed before the column.
+UPDATE user u
+JOIN (SELECT user_id, MAX(created_at) AS last_post_at FROM post GROUP BY user_id) p ON p.user_id = u.userId
+SET u.last_post_at = p.last_post_at;
@@ -7,7 +7,7 @@
 -- User Management
 -- ==============================================
 
--- Register a new user
+-- Register a new user (the generated userId is added to the in-memory people search index)
 -- URL: /register (POST)
 INSERT INTO user (username, password, firstName, lastName) VALUES (?, ?, ?, ?);
 
@@ -19,23 +19,44 @@ SELECT userId, username, password, firstName, lastName FROM user WHERE username
 -- Post Management
 -- ==============================================
 
--- Create a new post
+-- Create a new post (all statements down to the post_hashtag insert run in one
+-- transaction; the new post_id is read from the insert's generated keys)
 -- URL: /home (POST)
 INSERT INTO post (user_id, content, created_at) VALUES (?, ?, ?);
 
--- Get the ID of the post we just created
+-- Push the new post onto every follower's timeline
 -- URL: /home (POST)
-SELECT LAST_INSERT_ID();
+INSERT INTO timeline (user_id, post_id, author_id, created_at)
+SELECT f.follower_id, p.post_id, p.user_id, p.created_at
+FROM post p JOIN follow f ON f.followee_id = p.user_id
+WHERE p.post_id = ?;
+
+-- Load the in-memory hashtag dictionary (tag <-> id)
+-- URL: none, runs at startup
+SELECT hashtag_id, tag FROM hashtag;
+
+-- Add all of the post's hashtags not yet in the dictionary in one statement (ignore ones that already exist)
+-- URL: /home (POST)
+INSERT IGNORE INTO hashtag (tag) VALUES (?), (?), (?);
+
+-- Find the hashtag IDs of those same hashtags
+-- URL: /home (POST)
+SELECT hashtag_id, tag FROM hashtag WHERE tag IN (?, ?, ?);
 
--- Add hashtag to database (ignore if already exists)
+-- Move the author's latest post time forward
 -- URL: /home (POST)
-INSERT INTO hashtag (tag) VALUES (?) ON DUPLICATE KEY UPDATE tag = tag;
+UPDATE user SET last_post_at = GREATEST(last_post_at, ?) WHERE userId = ?;
 
--- Find hashtag ID by name
+-- Count the post in the author's profile stats
 -- URL: /home (POST)
-SELECT hashtag_id FROM hashtag WHERE tag = ?;
+INSERT INTO user_stats (user_id, posts_count) VALUES (?, 1)
+ON DUPLICATE KEY UPDATE posts_count = posts_count + 1;
 
--- Link post to hashtag
+-- Start the post's counters and hot score (score = created_at / tau until it gets engagement)
+-- URL: /home (POST)
+INSERT INTO post_stats (post_id, hot_score) VALUES (?, ?);
+
+-- Link post to hashtag (one JDBC batch for all of the post's hashtags)
 -- URL: /home (POST)
 INSERT INTO post_hashtag (post_id, hashtag_id) VALUES (?, ?);
 
@@ -43,108 +64,240 @@ INSERT INTO post_hashtag (post_id, hashtag_id) VALUES (?, ?);
 -- Home Page
 -- ==============================================
 
--- Show posts from people you follow
+-- Page of post ids from your timeline (push path)
+-- URL: / and /?cursor={createdAtMillis}_{postId} (GET)
+-- Keyset pagination: the cursor condition is only added after the first page.
+SELECT t.post_id, t.created_at FROM timeline t
+WHERE t.user_id = ?
+  AND (t.created_at < ? OR (t.created_at = ? AND t.post_id < ?))
+ORDER BY t.created_at DESC, t.post_id DESC
+LIMIT ?;
+
+-- Which high-follower authors do you follow (hybrid mode; answered by the
+-- in-memory follow graph once it is loaded)
+-- URL: / (GET)
+SELECT followee_id FROM follow WHERE follower_id = ? AND followee_id IN (?, ?, ?);
+
+-- People you may know: names of the suggested users (the ranking itself is a
+-- friends-of-friends walk over the in-memory follow graph, cached per user).
+-- Also loads people search results.
+-- URL: /people (GET), /people/search (GET)
+SELECT userId, firstName, lastName, last_post_at FROM user WHERE userId IN (?, ?, ?);
+
+-- Load the in-memory people search index (trigrams of username, first and last name)
+-- URL: none, runs at startup
+SELECT userId, username, firstName, lastName FROM user ORDER BY userId;
+
+-- Search people by name until the index is loaded (prefix match only; the index
+-- also tolerates typos and ranks by follower count). Matches are then loaded
+-- with the userId IN lookup above.
+-- URL: /people/search?q={query} (GET)
+SELECT userId FROM user WHERE username LIKE ? OR firstName LIKE ? OR lastName LIKE ?
+ORDER BY userId DESC LIMIT ?;
+
+-- Page of post ids from high-follower authors you follow (pull path, one branch per author)
 -- URL: / (GET)
-SELECT p.post_id, p.content, p.created_at, 
-       u.userId, u.firstName, u.lastName, 
-       COALESCE(like_count.likes, 0) AS hearts_count, 
-       COALESCE(comment_count.comments, 0) AS comments_count, 
-       CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_hearted, 
-       CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_bookmarked 
-FROM post p 
-JOIN follow f ON p.user_id = f.followee_id 
-JOIN user u ON p.user_id = u.userId  
-LEFT JOIN (SELECT post_id, COUNT(*) AS likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id 
-LEFT JOIN (SELECT post_id, COUNT(*) AS comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id 
-WHERE f.follower_id = ? 
-ORDER BY p.created_at DESC;
+(SELECT p.user_id, p.post_id, p.created_at FROM post p WHERE p.user_id = ?
+   AND (p.created_at < ? OR (p.created_at = ? AND p.post_id < ?))
+ ORDER BY p.created_at DESC, p.post_id DESC LIMIT ?)
+UNION ALL
+(SELECT p.user_id, p.post_id, p.created_at FROM post p WHERE p.user_id = ?
+   AND (p.created_at < ? OR (p.created_at = ? AND p.post_id < ?))
+ ORDER BY p.created_at DESC, p.post_id DESC LIMIT ?)
+ORDER BY user_id, created_at DESC, post_id DESC;
+
+-- Load post bodies and authors missing from the post cache
+-- URL: any page that lists posts
+SELECT p.post_id, p.content, p.created_at, u.userId, u.firstName, u.lastName
+FROM post p JOIN user u ON p.user_id = u.userId
+WHERE p.post_id IN (?, ?, ?);
+
+-- Load counters for a page of posts
+-- URL: any page that lists posts
+SELECT post_id, likes_count, comments_count FROM post_stats WHERE post_id IN (?, ?, ?);
+
+-- Load the viewer's liked and bookmarked post sets (once per user, then kept in memory)
+-- URL: first page a user loads that lists posts
+SELECT post_id FROM `like` WHERE user_id = ?;
+SELECT post_id FROM bookmark WHERE user_id = ?;
+
+-- Authors with too many followers to fan out (refreshed periodically)
+-- URL: none, runs on a schedule
+SELECT followee_id FROM follow GROUP BY followee_id HAVING COUNT(*) >= ?;
 
 -- ==============================================
 -- Profile Page
 -- ==============================================
 
--- Show posts by a specific user
+-- Profile header: name and counters in one primary-key lookup
 -- URL: /profile/{userId} (GET)
-SELECT p.post_id, p.content, p.created_at, 
-       u.userId, u.firstName, u.lastName, 
-       COALESCE(like_count.likes, 0) AS hearts_count, 
-       COALESCE(comment_count.comments, 0) AS comments_count, 
-       CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_hearted, 
-       CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_bookmarked 
-FROM post p 
-JOIN user u ON p.user_id = u.userId 
-LEFT JOIN (SELECT post_id, COUNT(*) AS likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id 
-LEFT JOIN (SELECT post_id, COUNT(*) AS comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id 
-WHERE p.user_id = ? 
-ORDER BY p.created_at DESC;
+SELECT u.userId, u.firstName, u.lastName,
+       COALESCE(s.followers_count, 0) AS followers_count,
+       COALESCE(s.following_count, 0) AS following_count,
+       COALESCE(s.posts_count, 0) AS posts_count,
+       COALESCE(s.likes_received, 0) AS likes_received
+FROM user u LEFT JOIN user_stats s ON s.user_id = u.userId
+WHERE u.userId = ?;
+
+-- Show posts by a specific user (ids, then loaded like the home feed)
+-- URL: /profile/{userId} (GET)
+SELECT post_id FROM post WHERE user_id = ? ORDER BY created_at DESC, post_id DESC;
 
 -- ==============================================
 -- Bookmarks Page
 -- ==============================================
 
--- Show posts you've bookmarked
+-- Show posts you've bookmarked (ids, then loaded like the home feed)
 -- URL: /bookmarks (GET)
-SELECT p.post_id, p.content, p.created_at, 
-       u.userId, u.firstName, u.lastName, 
-       COALESCE(like_count.likes, 0) AS hearts_count, 
-       COALESCE(comment_count.comments, 0) AS comments_count, 
-       CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_hearted, 
-       CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_bookmarked 
-FROM post p 
-JOIN bookmark b ON p.post_id = b.post_id 
-JOIN user u ON p.user_id = u.userId 
-LEFT JOIN (SELECT post_id, COUNT(*) AS likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id 
-LEFT JOIN (SELECT post_id, COUNT(*) AS comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id 
-WHERE b.user_id = ? 
-ORDER BY p.created_at DESC;
+SELECT p.post_id FROM bookmark b JOIN post p ON p.post_id = b.post_id
+WHERE b.user_id = ? ORDER BY p.created_at DESC, p.post_id DESC;
 
 -- ==============================================
 -- Hashtag Search
 -- ==============================================
 
--- Find posts with specific hashtags (any of them)
--- URL: /hashtagsearch?hashtags=#tag1 #tag2 (GET)
-SELECT p.post_id, p.content, p.created_at, 
-       u.userId, u.firstName, u.lastName, 
-       COALESCE(like_count.likes, 0) AS hearts_count, 
-       COALESCE(comment_count.comments, 0) AS comments_count, 
-       CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_hearted, 
-       CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_bookmarked 
-FROM post p 
-JOIN user u ON p.user_id = u.userId 
-JOIN post_hashtag ph ON p.post_id = ph.post_id 
-JOIN hashtag h ON ph.hashtag_id = h.hashtag_id 
-LEFT JOIN (SELECT post_id, COUNT(*) AS likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id 
-LEFT JOIN (SELECT post_id, COUNT(*) AS comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id 
-WHERE h.tag IN (?, ?, ?, ?, ?) 
-GROUP BY p.post_id, p.content, p.created_at, u.userId, u.firstName, u.lastName 
-ORDER BY p.created_at DESC;
+-- Find posts with specific hashtags, one page at a time.
+-- Tags are turned into hashtag ids by the in-memory hashtag dictionary first.
+-- Newest-first pages normally come from the in-memory hashtag index; the queries
+-- below serve the other orders, and newest first until the index is built.
+-- Posts are then loaded like the home feed.
+-- URL: /hashtagsearch?hashtags=#tag1 #tag2&match=any|all&sort=recent|engagement|relevance&cursor=<sortKey_postId> (GET)
+
+-- Rebuild the in-memory hashtag index (ordered so each posting list is appended to)
+-- URL: none, runs at startup
+SELECT post_id, hashtag_id FROM post_hashtag ORDER BY post_id;
+
+-- sort=recent, match=any (match=all adds HAVING COUNT(*) = <number of tags>)
+SELECT ph.post_id, ph.post_id AS sort_key FROM post_hashtag ph
+WHERE ph.hashtag_id IN (?, ?, ?) AND ph.post_id < ?
+GROUP BY ph.post_id
+ORDER BY sort_key DESC, ph.post_id DESC LIMIT ?;
+
+-- sort=engagement: 1000 * (likes plus weighted comments), floored, seeking past the previous page's last (key, post_id)
+SELECT ph.post_id,
+       FLOOR(? * (COALESCE(MAX(ps.likes_count), 0) + ? * COALESCE(MAX(ps.comments_count), 0))) AS sort_key
+FROM post_hashtag ph LEFT JOIN post_stats ps ON ps.post_id = ph.post_id
+WHERE ph.hashtag_id IN (?, ?, ?)
+GROUP BY ph.post_id
+HAVING (sort_key < ? OR (sort_key = ? AND ph.post_id < ?))
+ORDER BY sort_key DESC, ph.post_id DESC LIMIT ?;
+
+-- sort=relevance: number of the searched tags the post carries
+SELECT ph.post_id, COUNT(*) AS sort_key FROM post_hashtag ph
+WHERE ph.hashtag_id IN (?, ?, ?)
+GROUP BY ph.post_id
+HAVING (sort_key < ? OR (sort_key = ? AND ph.post_id < ?))
+ORDER BY sort_key DESC, ph.post_id DESC LIMIT ?;
+
+-- Weight hashtags for autocomplete by recent uses (rebuilt in the background;
+-- /hashtags/suggest?prefix= itself answers from memory)
+-- URL: none, runs at startup and periodically
+SELECT hashtag_id, SUM(uses) AS uses FROM hashtag_usage_hourly
+WHERE hour_start >= (CURRENT_TIMESTAMP - INTERVAL ? DAY) GROUP BY hashtag_id;
+
+-- ==============================================
+-- Post Search
+-- ==============================================
+
+-- Posts are matched and ranked (BM25) by the in-memory search index, which is
+-- saved to a local file. Catch the loaded index up with posts it has not seen:
+-- everything past its largest post_id, plus posts created shortly before it was saved
+-- URL: none, runs at startup
+SELECT post_id, content FROM post WHERE post_id > ? OR created_at >= ? ORDER BY post_id;
+
+-- Fallback until the index is loaded: newest posts containing the text as typed
+-- URL: /search?q=some words&page=2 (GET)
+SELECT post_id FROM post WHERE content LIKE ? ORDER BY post_id DESC LIMIT ? OFFSET ?;
+
+-- ==============================================
+-- Trending
+-- ==============================================
+
+-- Rebuild the in-memory hourly hashtag counters (one row per hashtag and hour)
+-- URL: none, runs at startup
+SELECT ph.hashtag_id, MIN(p.created_at) AS hour_start, COUNT(*) AS uses
+FROM post_hashtag ph JOIN post p ON p.post_id = ph.post_id
+WHERE p.created_at >= (CURRENT_TIMESTAMP - INTERVAL ? HOUR) AND p.created_at < ?
+GROUP BY ph.hashtag_id, DATE_FORMAT(p.created_at, '%Y-%m-%d %H');
+-- Posts inside the grace period, one row per post and hashtag, so late commits can be deduplicated
+SELECT ph.post_id, ph.hashtag_id, p.created_at
+FROM post_hashtag ph JOIN post p ON p.post_id = ph.post_id
+WHERE p.created_at >= ?;
+
+-- Top hashtags for windows the in-memory counters do not cover
+-- (rolled-up hours plus the raw posts past the rollup watermark)
+-- URL: /trending?days=90 (GET)
+SELECT hashtag_id, SUM(uses) AS usage_count FROM (
+  SELECT hashtag_id, uses FROM hashtag_usage_hourly
+  WHERE hour_start >= DATE_FORMAT(CURRENT_TIMESTAMP - INTERVAL ? DAY, '%Y-%m-%d %H:00:00')
+  UNION ALL
+  SELECT ph.hashtag_id, 1 FROM post_hashtag ph
+  JOIN post p ON p.post_id = ph.post_id
+  WHERE p.post_id > (SELECT position FROM rollup_watermark WHERE name = 'hashtag_usage')
+    AND p.created_at >= (CURRENT_TIMESTAMP - INTERVAL ? DAY)
+) usage_rows
+GROUP BY hashtag_id
+ORDER BY usage_count DESC LIMIT ?;
+-- One extra row is fetched; if it ties the last one, every tag at that count is
+-- read again (same query with HAVING usage_count = ? instead of ORDER BY/LIMIT)
+-- so ties are broken by tag name.
+
+-- Most liked posts: likes received in the window
+-- URL: /trending (GET)
+SELECT p.post_id, p.content, p.created_at, u.userId, u.firstName, u.lastName,
+       t.like_count, COALESCE(ps.comments_count, 0) AS comment_count
+FROM (
+  SELECT post_id, SUM(likes) AS like_count FROM (
+    SELECT post_id, likes FROM post_likes_hourly
+    WHERE hour_start >= DATE_FORMAT(CURRENT_TIMESTAMP - INTERVAL ? DAY, '%Y-%m-%d %H:00:00')
+    UNION ALL
+    SELECT post_id, 1 FROM `like`
+    WHERE created_at >= (SELECT FROM_UNIXTIME(position) FROM rollup_watermark WHERE name = 'post_likes')
+      AND created_at >= (CURRENT_TIMESTAMP - INTERVAL ? DAY)
+  ) like_rows
+  GROUP BY post_id
+  HAVING like_count > 0
+  ORDER BY like_count DESC, post_id DESC
+  LIMIT 10
+) t
+JOIN post p ON p.post_id = t.post_id
+JOIN user u ON u.userId = p.user_id
+LEFT JOIN post_stats ps ON ps.post_id = p.post_id
+ORDER BY t.like_count DESC, p.created_at DESC;
+
+-- Hot posts: precomputed score, read straight off idx_post_stats_hot
+-- URL: /trending?sort=hot (GET)
+SELECT p.post_id, p.content, p.created_at, u.userId, u.firstName, u.lastName,
+       ps.likes_count AS like_count, ps.comments_count AS comment_count
+FROM post_stats ps
+JOIN post p ON p.post_id = ps.post_id
+JOIN user u ON u.userId = p.user_id
+WHERE p.created_at >= (CURRENT_TIMESTAMP - INTERVAL ? DAY)
+ORDER BY ps.hot_score DESC
+LIMIT 10;
 
 -- ==============================================
 -- People Page
 -- ==============================================
 
--- Show all users you can follow (with follow status and last post time)
+-- Page of users you can follow, most recent poster first (keyset on last_post_at, userId).
+-- URL: /people and /people?cursor={lastPostAtMillis}_{userId} (GET)
+-- The cursor condition is only added after the first page.
+SELECT u.userId, u.firstName, u.lastName, u.last_post_at
+FROM user u
+WHERE u.userId <> ?
+  AND (u.last_post_at < ? OR (u.last_post_at = ? AND u.userId < ?))
+ORDER BY u.last_post_at DESC, u.userId DESC
+LIMIT ?;
+
+-- Load the in-memory follow graph
+-- URL: none, runs at startup
+SELECT follower_id, followee_id FROM follow;
+
+-- Which users on the page you already follow (one lookup for the whole page;
+-- answered by the in-memory follow graph once it is loaded)
 -- URL: /people (GET)
-SELECT u.userId, u.firstName, u.lastName, 
-       COALESCE(DATE_FORMAT(MAX(p.created_at), '%b %d, %Y, %h:%i %p'), 'Unknown') AS last_post_time, 
-       CASE WHEN EXISTS ( 
-         SELECT 1 FROM follow f 
-          WHERE f.follower_id = ? AND f.followee_id = u.userId 
-       ) THEN 1 ELSE 0 END AS is_followed 
-FROM user u 
-LEFT JOIN post p ON p.user_id = u.userId 
-WHERE u.userId <> ? 
-GROUP BY u.userId, u.firstName, u.lastName 
-ORDER BY COALESCE(MAX(p.created_at), TIMESTAMP('1970-01-01 00:00:00')) DESC;
+SELECT followee_id FROM follow WHERE follower_id = ? AND followee_id IN (?, ?, ?);
 
 -- ==============================================
 -- Follow/Unfollow
@@ -154,34 +307,108 @@ ORDER BY COALESCE(MAX(p.created_at), TIMESTAMP('1970-01-01 00:00:00')) DESC;
 -- URL: /people/{userId}/follow (POST)
 INSERT INTO follow (follower_id, followee_id, created_at) VALUES (?, ?, ?);
 
+-- Backfill the follower's timeline with the followee's latest posts (same transaction)
+-- URL: /people/{userId}/follow (POST)
+INSERT IGNORE INTO timeline (user_id, post_id, author_id, created_at)
+SELECT ?, p.post_id, p.user_id, p.created_at FROM post p
+WHERE p.user_id = ?
+ORDER BY p.created_at DESC, p.post_id DESC
+LIMIT ?;
+
+-- Move the follower's following_count and the followee's followers_count (same
+-- transaction, only if the insert added a row; the lower userId is written first)
+-- URL: /people/{userId}/follow (POST)
+INSERT INTO user_stats (user_id, following_count) VALUES (?, GREATEST(?, 0))
+ON DUPLICATE KEY UPDATE following_count = GREATEST(following_count + ?, 0);
+INSERT INTO user_stats (user_id, followers_count) VALUES (?, GREATEST(?, 0))
+ON DUPLICATE KEY UPDATE followers_count = GREATEST(followers_count + ?, 0);
+
 -- Unfollow someone
 -- URL: /people/{userId}/unfollow (POST)
 DELETE FROM follow WHERE follower_id = ? AND followee_id = ?;
 
+-- Remove the followee's posts from the follower's timeline (same transaction)
+-- URL: /people/{userId}/unfollow (POST)
+DELETE FROM timeline WHERE user_id = ? AND author_id = ?;
+
+-- Unfollow moves the same two user_stats counters by -1 (only if the delete removed a row)
+-- URL: /people/{userId}/unfollow (POST)
+
 -- ==============================================
 -- Like/Unlike
 -- ==============================================
 
 -- Like a post
 -- URL: /post/{postId}/heart/true (GET)
-INSERT INTO `like` (user_id, post_id, created_at) VALUES (?, ?, ?);
+INSERT IGNORE INTO `like` (user_id, post_id) VALUES (?, ?);
+
+-- Bump the like counter (same transaction, only if the insert added a row)
+-- URL: /post/{postId}/heart/true (GET)
+INSERT INTO post_stats (post_id, likes_count) VALUES (?, 1)
+ON DUPLICATE KEY UPDATE likes_count = likes_count + 1, engaged_at = CURRENT_TIMESTAMP;
+
+-- Bump the author's likes received (same transaction)
+-- URL: /post/{postId}/heart/true (GET)
+INSERT INTO user_stats (user_id, likes_received) SELECT user_id, 1 FROM post WHERE post_id = ?
+ON DUPLICATE KEY UPDATE likes_received = likes_received + 1;
+
+-- Take the like out of its rollup hour if already rolled up (same transaction, before the delete)
+-- URL: /post/{postId}/heart/false (GET)
+UPDATE post_likes_hourly plh
+JOIN `like` l ON l.post_id = plh.post_id
+             AND plh.hour_start = DATE_FORMAT(l.created_at, '%Y-%m-%d %H:00:00')
+JOIN rollup_watermark w ON w.name = 'post_likes'
+                      AND l.created_at < FROM_UNIXTIME(w.position)
+SET plh.likes = plh.likes - 1
+WHERE l.user_id = ? AND l.post_id = ? AND plh.likes > 0;
 
 -- Unlike a post
 -- URL: /post/{postId}/heart/false (GET)
 DELETE FROM `like` WHERE user_id = ? AND post_id = ?;
 
+-- Drop the like counter (same transaction, only if the delete removed a row)
+-- URL: /post/{postId}/heart/false (GET)
+UPDATE post_stats SET likes_count = likes_count - 1, engaged_at = CURRENT_TIMESTAMP
+WHERE post_id = ? AND likes_count > 0;
+
+-- Drop the author's likes received (same transaction)
+-- URL: /post/{postId}/heart/false (GET)
+UPDATE user_stats s JOIN post p ON p.user_id = s.user_id
+SET s.likes_received = s.likes_received - 1
+WHERE p.post_id = ? AND s.likes_received > 0;
+
 -- ==============================================
 -- Bookmark/Unbookmark
 -- ==============================================
 
 -- Bookmark a post
 -- URL: /post/{postId}/bookmark/true (GET)
-INSERT INTO bookmark (user_id, post_id, created_at) VALUES (?, ?, ?);
+INSERT IGNORE INTO bookmark (user_id, post_id) VALUES (?, ?);
+
+-- Bump the bookmark counter (same transaction, only if the insert added a row)
+-- URL: /post/{postId}/bookmark/true (GET)
+INSERT INTO post_stats (post_id, bookmarks_count) VALUES (?, 1)
+ON DUPLICATE KEY UPDATE bookmarks_count = bookmarks_count + 1;
 
 -- Unbookmark a post
 -- URL: /post/{postId}/bookmark/false (GET)
 DELETE FROM bookmark WHERE user_id = ? AND post_id = ?;
 
+-- Drop the bookmark counter (same transaction, only if the delete removed a row)
+-- URL: /post/{postId}/bookmark/false (GET)
+UPDATE post_stats SET bookmarks_count = bookmarks_count - 1 WHERE post_id = ? AND bookmarks_count > 0;
+
+-- Write-behind mode: pending toggles are flushed as batches of the statements above
+-- in one transaction, then each post's counter moves by the rows that changed
+-- URL: none, runs on a timer or when enough toggles are queued
+INSERT INTO post_stats (post_id, likes_count) VALUES (?, GREATEST(?, 0))
+ON DUPLICATE KEY UPDATE likes_count = GREATEST(likes_count + ?, 0), engaged_at = CURRENT_TIMESTAMP;
+INSERT INTO post_stats (post_id, bookmarks_count) VALUES (?, GREATEST(?, 0))
+ON DUPLICATE KEY UPDATE bookmarks_count = GREATEST(bookmarks_count + ?, 0);
+INSERT INTO user_stats (user_id, likes_received)
+SELECT user_id, GREATEST(?, 0) FROM post WHERE post_id = ?
+ON DUPLICATE KEY UPDATE likes_received = GREATEST(likes_received + ?, 0);
+
 -- ==============================================
 -- Comments
 -- ==============================================
@@ -190,6 +417,11 @@ DELETE FROM bookmark WHERE user_id = ? AND post_id = ?;
 -- URL: /post/{postId}/comment (POST)
 INSERT INTO comment (user_id, post_id, content, created_at) VALUES (?, ?, ?, ?);
 
+-- Bump the comment counter (same transaction as the insert)
+-- URL: /post/{postId}/comment (POST)
+INSERT INTO post_stats (post_id, comments_count) VALUES (?, 1)
+ON DUPLICATE KEY UPDATE comments_count = comments_count + 1, engaged_at = CURRENT_TIMESTAMP;
+
 -- Get all comments for a post (oldest first)
 -- URL: /post/{postId} (GET)
 SELECT c.comment_id, c.content, c.created_at, 
@@ -205,19 +437,77 @@ ORDER BY c.created_at ASC;
 
 -- Show a single post with all its details
 -- URL: /post/{postId} (GET)
-SELECT p.post_id, p.content, p.created_at, 
-       u.userId, u.firstName, u.lastName, 
-       COALESCE(like_count.likes, 0) AS hearts_count, 
-       COALESCE(comment_count.comments, 0) AS comments_count, 
-       CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_hearted, 
-       CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_bookmarked 
-FROM post p 
-JOIN user u ON p.user_id = u.userId 
-LEFT JOIN (SELECT post_id, COUNT(*) AS likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id 
-LEFT JOIN (SELECT post_id, COUNT(*) AS comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id 
-LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id 
-WHERE p.post_id = ?;
+-- Loaded through the same post cache and counter/flag queries as the home feed, with one id.
+
+-- ==============================================
+-- Maintenance
+-- ==============================================
+
+-- Recount post_stats for a post_id range (repair job, see PostStatsService)
+-- URL: none, runs on a schedule
+INSERT INTO post_stats (post_id, likes_count, comments_count, bookmarks_count)
+SELECT p.post_id,
+       (SELECT COUNT(*) FROM `like` l WHERE l.post_id = p.post_id),
+       (SELECT COUNT(*) FROM comment c WHERE c.post_id = p.post_id),
+       (SELECT COUNT(*) FROM bookmark b WHERE b.post_id = p.post_id)
+FROM post p
+WHERE p.post_id > ? AND p.post_id <= ?
+ON DUPLICATE KEY UPDATE engaged_at = IF(likes_count <> VALUES(likes_count)
+                                        OR comments_count <> VALUES(comments_count),
+                                        CURRENT_TIMESTAMP, engaged_at),
+                        likes_count = VALUES(likes_count),
+                        comments_count = VALUES(comments_count),
+                        bookmarks_count = VALUES(bookmarks_count);
+
+-- Recount user_stats for a userId range (repair job, see UserStatsService)
+-- URL: none, runs on a schedule
+INSERT INTO user_stats (user_id, followers_count, following_count, posts_count, likes_received)
+SELECT u.userId,
+       (SELECT COUNT(*) FROM follow f WHERE f.followee_id = u.userId),
+       (SELECT COUNT(*) FROM follow f WHERE f.follower_id = u.userId),
+       (SELECT COUNT(*) FROM post p WHERE p.user_id = u.userId),
+       (SELECT COUNT(*) FROM `like` l JOIN post p ON p.post_id = l.post_id WHERE p.user_id = u.userId)
+FROM user u
+WHERE u.userId > ? AND u.userId <= ?
+ON DUPLICATE KEY UPDATE followers_count = VALUES(followers_count),
+                        following_count = VALUES(following_count),
+                        posts_count = VALUES(posts_count),
+                        likes_received = VALUES(likes_received);
+
+-- Rescore posts engaged since the last run (see HotScoreService)
+-- URL: none, runs on a schedule
+SELECT position FROM rollup_watermark WHERE name = 'hot_score' FOR UPDATE;
+UPDATE post_stats ps JOIN post p ON p.post_id = ps.post_id
+SET ps.hot_score = LN(1 + ps.likes_count + ? * ps.comments_count) + UNIX_TIMESTAMP(p.created_at) / ?
+WHERE ps.engaged_at >= FROM_UNIXTIME(?);
+INSERT INTO rollup_watermark (name, position) VALUES ('hot_score', ?)
+ON DUPLICATE KEY UPDATE position = VALUES(position);
+
+-- Roll up hashtag uses for the next batch of posts past the watermark (see RollupService)
+-- URL: none, runs on a schedule
+SELECT position FROM rollup_watermark WHERE name = 'hashtag_usage' FOR UPDATE;
+SELECT MAX(post_id) FROM (
+  SELECT post_id FROM post
+  WHERE post_id > ? AND created_at < (CURRENT_TIMESTAMP - INTERVAL ? SECOND)
+  ORDER BY post_id LIMIT ?) batch;
+INSERT INTO hashtag_usage_hourly (hour_start, hashtag_id, uses)
+SELECT DATE_FORMAT(p.created_at, '%Y-%m-%d %H:00:00') AS hour_start, ph.hashtag_id, COUNT(*)
+FROM post_hashtag ph JOIN post p ON p.post_id = ph.post_id
+WHERE p.post_id > ? AND p.post_id <= ?
+GROUP BY hour_start, ph.hashtag_id
+ON DUPLICATE KEY UPDATE uses = uses + VALUES(uses);
+UPDATE rollup_watermark SET position = ? WHERE name = 'hashtag_usage';
+
+-- Roll up likes for the next chunk of hours past the watermark
+-- URL: none, runs on a schedule
+SELECT position FROM rollup_watermark WHERE name = 'post_likes' FOR UPDATE;
+INSERT INTO post_likes_hourly (hour_start, post_id, likes)
+SELECT DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00') AS hour_start, post_id, COUNT(*)
+FROM `like`
+WHERE created_at >= FROM_UNIXTIME(?) AND created_at < FROM_UNIXTIME(?)
+GROUP BY hour_start, post_id
+ON DUPLICATE KEY UPDATE likes = likes + VALUES(likes);
+UPDATE rollup_watermark SET position = ? WHERE name = 'post_likes';
 
 -- ==============================================
 -- Utility Queries
@@ -0,0 +1,188 @@
+package uga.menik.csx370.components;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs the independent service calls behind one page concurrently.
+ *
+ * A page starts a Composition, forks each call onto a small bounded pool and
+ * joins the results against one deadline for the whole page, so page latency
+ * is the slowest call rather than the sum of all of them. A call that fails
+ * or misses the deadline yields the fallback given at join time, or throws
+ * when joined without one. Every call is timed once as page.call, tagged
+ * with page, call and outcome.
+ *
+ * When the pool and its queue are full the call runs on the request thread,
+ * which degrades to the old sequential behaviour instead of rejecting.
+ */
+@Component
+public class PageComposer {
+
+    private final ThreadPoolExecutor executor;
+
+    private final MeterRegistry meterRegistry;
+
+    private final long deadlineMs;
+
+    @Autowired
+    public PageComposer(MeterRegistry meterRegistry,
+                        @Value("${app.pages.threads:16}") int threads,
+                        @Value("${app.pages.queue-size:64}") int queueSize,
+                        @Value("${app.pages.deadline-ms:2000}") long deadlineMs) {
+        this.meterRegistry = meterRegistry;
+        this.deadlineMs = deadlineMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "page-composer-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts composing one page. The deadline starts counting now.
+     */
+    public Composition begin(String page) {
+        return new Composition(page, System.nanoTime());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The calls of one page request.
+     */
+    public final class Composition {
+        private final String page;
+        private final long startNanos;
+        private final long deadlineNanos;
+
+        private Composition(String page, long startNanos) {
+            this.page = page;
+            this.startNanos = startNanos;
+            this.deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        }
+
+        /**
+         * Starts a call in the background.
+         */
+        public <T> Call<T> fork(String name, Supplier<T> task) {
+            // Set by whichever records the outcome first: the task, or a join that timed out.
+            AtomicBoolean recorded = new AtomicBoolean();
+            CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                String outcome = "ok";
+                try {
+                    return task.get();
+                } catch (RuntimeException e) {
+                    outcome = "error";
+                    throw e;
+                } finally {
+                    if (recorded.compareAndSet(false, true)) {
+                        timer(name, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }, executor);
+            return new Call<>(name, future, recorded);
+        }
+
+        /**
+         * Waits for a call until the page deadline. Returns fallback if the
+         * call failed or is still running at the deadline.
+         */
+        public <T> T join(Call<T> call, T fallback) {
+            try {
+                return await(call);
+            } catch (TimeoutException e) {
+                return fallback;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                return fallback;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return fallback;
+            }
+        }
+
+        /**
+         * Waits for a call the page cannot be shown without, until the page
+         * deadline. Throws if the call failed or is still running at the
+         * deadline.
+         */
+        public <T> T join(Call<T> call) {
+            try {
+                return await(call);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("Page " + page + ": " + call.name + " missed the deadline", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Page " + page + ": interrupted waiting for " + call.name, e);
+            }
+        }
+
+        private <T> T await(Call<T> call) throws TimeoutException, ExecutionException, InterruptedException {
+            long remaining = deadlineNanos - System.nanoTime();
+            try {
+                return call.future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                call.future.cancel(true);
+                if (call.recorded.compareAndSet(false, true)) {
+                    timer(call.name, "timeout").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                }
+                System.err.println("Page " + page + ": " + call.name + " missed the deadline");
+                throw e;
+            }
+        }
+
+        private Timer timer(String call, String outcome) {
+            return Timer.builder("page.call")
+                    .description("Service calls made while composing a page")
+                    .tag("page", page)
+                    .tag("call", call)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * A forked call; pass it to Composition.join.
+     */
+    public static final class Call<T> {
+        private final String name;
+        private final CompletableFuture<T> future;
+        private final AtomicBoolean recorded;
+
+        private Call(String name, CompletableFuture<T> future, AtomicBoolean recorded) {
+            this.name = name;
+            this.future = future;
+            this.recorded = recorded;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package uga.menik.csx370.components;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import uga.menik.csx370.services.ViewerFlagsService;
+
+/**
+ * Releases per-user in-memory state when a user's session ends.
+ * Spring Boot registers HttpSessionListener beans with the servlet container.
+ */
+@Component
+public class SessionEvictionListener implements HttpSessionListener {
+
+    private final ViewerFlagsService viewerFlagsService;
+
+    @Autowired
+    public SessionEvictionListener(ViewerFlagsService viewerFlagsService) {
+        this.viewerFlagsService = viewerFlagsService;
+    }
+
+    /**
+     * Drops the liked/bookmarked sets of the user who owned the session.
+     * LoginController stores the user id as a session attribute.
+     */
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        Object userIdObj = se.getSession().getAttribute("userId");
+        if (userIdObj == null) {
+            return;
+        }
+        try {
+            viewerFlagsService.evict(Long.parseLong(userIdObj.toString()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid userId format in session: " + userIdObj);
+        }
+    }
+}
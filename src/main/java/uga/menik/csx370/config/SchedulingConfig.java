@@ -0,0 +1,13 @@
+package uga.menik.csx370.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on Spring's @Scheduled support for background maintenance jobs
+ * such as the post_stats reconcile in PostStatsService.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
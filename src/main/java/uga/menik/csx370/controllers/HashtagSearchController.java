@@ -5,6 +5,8 @@ This is a project developed by Dr. Menik to give the students an opportunity to
 */
 package uga.menik.csx370.controllers;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import org.springframework.stereotype.Controller;
@@ -14,6 +16,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 
 import uga.menik.csx370.models.Post;
+import uga.menik.csx370.models.PostPage;
 import uga.menik.csx370.utility.Utility;
 import uga.menik.csx370.services.PostService;
 import uga.menik.csx370.services.UserService;
@@ -36,9 +39,15 @@ public class HashtagSearchController {
 
     /**
      * This function handles the /hashtagsearch URL.
+     * match=all shows only posts carrying every hashtag; the default, any,
+     * shows posts carrying at least one. sort is recent (the default),
+     * engagement or relevance (most of the searched hashtags first).
      */
     @GetMapping
-    public ModelAndView webpage(@RequestParam(name = "hashtags") String hashtags) {
+    public ModelAndView webpage(@RequestParam(name = "hashtags") String hashtags,
+                                @RequestParam(name = "match", defaultValue = "any") String match,
+                                @RequestParam(name = "sort", required = false) String sortParam,
+                                @RequestParam(name = "cursor", required = false) String cursor) {
         System.out.println("User is searching: " + hashtags);
 
         ModelAndView mv = new ModelAndView("posts_page");
@@ -60,8 +69,21 @@ public class HashtagSearchController {
             } else {
                 // Get posts by hashtags
                 Long userId = Long.parseLong(loggedInUser.getUserId());
-                List<Post> posts = postService.getPostsByHashtags(hashtagList, userId);
+                boolean matchAll = "all".equalsIgnoreCase(match);
+                mv.addObject("matchAll", matchAll);
+                PostService.HashtagSort sort = PostService.HashtagSort.parse(sortParam);
+                mv.addObject("sortEngagement", sort == PostService.HashtagSort.ENGAGEMENT);
+                mv.addObject("sortRelevance", sort == PostService.HashtagSort.RELEVANCE);
+                PostPage page = postService.getPostsByHashtags(hashtagList, matchAll, sort, userId, cursor);
+                List<Post> posts = page.getPosts();
                 mv.addObject("posts", posts);
+                if (page.hasMore()) {
+                    mv.addObject("nextPageUrl", "/hashtagsearch?hashtags="
+                            + URLEncoder.encode(hashtags, StandardCharsets.UTF_8)
+                            + "&match=" + (matchAll ? "all" : "any")
+                            + "&sort=" + sort.name().toLowerCase()
+                            + "&cursor=" + page.getNextCursor());
+                }
 
                 // If no posts found, show no content message
                 if (posts.isEmpty()) {
@@ -0,0 +1,39 @@
+/**
+Copyright (c) 2024 Sami Menik, PhD. All rights reserved.
+
+This is a project developed by Dr. Menik to give the students an opportunity to apply database concepts learned in the class in a real world project. Permission is granted to host a running version of this software and to use images or videos of this work solely for the purpose of demonstrating the work to potential employers. Any form of reproduction, distribution, or transmission of the software's source code, in part or whole, without the prior written consent of the copyright owner, is strictly prohibited.
+*/
+package uga.menik.csx370.controllers;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import uga.menik.csx370.services.HashtagSuggestService;
+
+/**
+ * Handles /hashtags URL and its sub URLs.
+ */
+@Controller
+@RequestMapping("/hashtags")
+public class HashtagSuggestController {
+
+    @Autowired
+    private HashtagSuggestService hashtagSuggestService;
+
+    /**
+     * Returns hashtags starting with prefix as a JSON array, for the search box autocomplete.
+     * Example: /hashtags/suggest?prefix=jav returns ["java", "javascript"].
+     */
+    @GetMapping("/suggest")
+    @ResponseBody
+    public List<String> suggest(@RequestParam(name = "prefix", defaultValue = "") String prefix,
+                                @RequestParam(name = "limit", defaultValue = "8") int limit) {
+        return hashtagSuggestService.suggest(prefix, limit);
+    }
+}
@@ -17,7 +17,9 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 
 import uga.menik.csx370.models.Post;
+import uga.menik.csx370.models.PostPage;
 import uga.menik.csx370.utility.Utility;
+import uga.menik.csx370.services.FeedService;
 import uga.menik.csx370.services.PostService;
 import uga.menik.csx370.services.UserService;
 import uga.menik.csx370.models.User;
@@ -35,14 +37,20 @@ public class HomeController {
     @Autowired
     private PostService postService;
 
+    @Autowired
+    private FeedService feedService;
+
     @Autowired
     private UserService userService;
 
     /**
      * This function handles the / URL.
+     * The optional cursor parameter selects a later page of the feed
+     * and is produced by the "Load more" link on the previous page.
      */
     @GetMapping
     public ModelAndView webpage(@RequestParam(name = "error", required = false) String error,
+                               @RequestParam(name = "cursor", required = false) String cursor,
                                HttpSession session) {
         ModelAndView mv = new ModelAndView("home_page");
 
@@ -55,9 +63,13 @@ public class HomeController {
             }
             Long userId = Long.parseLong(userIdObj.toString());
 
-            // Get posts from users that the logged-in user follows
-            List<Post> posts = postService.getPostsFromFollowing(userId);
+            // Get a page of posts from users that the logged-in user follows
+            PostPage page = feedService.getPostsFromFollowing(userId, cursor);
+            List<Post> posts = page.getPosts();
             mv.addObject("posts", posts);
+            if (page.hasMore()) {
+                mv.addObject("nextPageUrl", "/?cursor=" + page.getNextCursor());
+            }
 
             // If no posts found, show no content message
             if (posts.isEmpty()) {
@@ -9,6 +9,7 @@ package uga.menik.csx370.controllers;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,7 +20,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 
+import uga.menik.csx370.components.PageComposer;
 import uga.menik.csx370.models.FollowableUser;
+import uga.menik.csx370.models.FollowableUserPage;
+import uga.menik.csx370.models.SuggestedUser;
 import uga.menik.csx370.services.PeopleService;
 import uga.menik.csx370.services.UserService;
 import uga.menik.csx370.models.User;
@@ -36,11 +40,13 @@ public class PeopleController {
     // Hint: Add a constructor with @Autowired annotation.
     private final UserService userService;
     private final PeopleService peopleService;
+    private final PageComposer pageComposer;
 
     @Autowired
-    public PeopleController(UserService userService, PeopleService peopleService) {
+    public PeopleController(UserService userService, PeopleService peopleService, PageComposer pageComposer) {
         this.userService = userService;
         this.peopleService = peopleService;
+        this.pageComposer = pageComposer;
     }
 
     /**
@@ -51,7 +57,8 @@ public class PeopleController {
      * See notes in HashtagSearchController.java regarding URL parameters.
      */
     @GetMapping
-    public ModelAndView webpage(@RequestParam(name = "error", required = false) String error) {
+    public ModelAndView webpage(@RequestParam(name = "error", required = false) String error,
+                                @RequestParam(name = "cursor", required = false) String cursor) {
         // See notes on ModelAndView in BookmarksController.java.
         ModelAndView mv = new ModelAndView("people_page");
 
@@ -67,8 +74,23 @@ public class PeopleController {
         // You should replace it with actual data from the database.
         // Use the PeopleService instance to find followable users.
         // Use UserService to access logged in userId to exclude.
-	List<FollowableUser> followableUsers =
-    	        peopleService.getFollowableUsers(me.getUserId());
+	// Suggestions are only shown above the first page.
+	PageComposer.Composition composition = pageComposer.begin("people");
+	PageComposer.Call<List<SuggestedUser>> suggestionsCall = cursor == null
+	        ? composition.fork("suggestions", () -> peopleService.getSuggestedUsers(me.getUserId()))
+	        : null;
+	FollowableUserPage page = peopleService.getFollowableUsers(me.getUserId(), cursor);
+	List<SuggestedUser> suggestedUsers = suggestionsCall == null
+	        ? new ArrayList<>()
+	        : composition.join(suggestionsCall, new ArrayList<>());
+	if (!suggestedUsers.isEmpty()) {
+	    mv.addObject("hasSuggestions", true);
+	    mv.addObject("suggestedUsers", suggestedUsers);
+	}
+	List<FollowableUser> followableUsers = page.getUsers();
+	if (page.hasMore()) {
+	    mv.addObject("nextPageUrl", "/people?cursor=" + page.getNextCursor());
+	}
     System.out.println("DEBUG /people -> DB rows: " + followableUsers.size());
         for (FollowableUser fu : followableUsers) {
             System.out.println("DEBUG user: " + fu.getFirstName() + " " + fu.getLastName());
@@ -100,6 +122,34 @@ public class PeopleController {
         }
     }
 
+    /**
+     * Serves /people/search?q=..., the users whose username or names match q,
+     * tolerating small typos, most followed first.
+     */
+    @GetMapping("search")
+    public ModelAndView search(@RequestParam(name = "q", required = false) String query,
+                               @RequestParam(name = "error", required = false) String error) {
+        ModelAndView mv = new ModelAndView("people_page");
+        User me = userService.getLoggedInUser();
+        if (me == null) {
+            String message = URLEncoder.encode("Please login first.", StandardCharsets.UTF_8);
+            mv.setViewName("redirect:/login?error=" + message);
+            return mv;
+        }
+        if (query == null || query.isBlank()) {
+            mv.setViewName("redirect:/people");
+            return mv;
+        }
+        List<FollowableUser> users = peopleService.searchUsers(me.getUserId(), query);
+        mv.addObject("users", users);
+        mv.addObject("peopleQuery", query);
+        if (users.isEmpty()) {
+            mv.addObject("isNoContent", true);
+        }
+        mv.addObject("errorMessage", error);
+        return mv;
+    }
+
     /**
      * This function handles user follow and unfollow.
      * Note the URL has parameters defined as variables ie: {userId} and {isFollow}.
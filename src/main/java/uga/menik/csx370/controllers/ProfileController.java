@@ -15,7 +15,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 
 import uga.menik.csx370.models.Post;
+import uga.menik.csx370.models.UserStats;
 import uga.menik.csx370.services.UserService;
+import uga.menik.csx370.services.UserStatsService;
 import uga.menik.csx370.services.PostService;
 import uga.menik.csx370.utility.Utility;
 import uga.menik.csx370.models.User;
@@ -29,14 +31,17 @@ public class ProfileController {
 
     private final UserService userService;
     private final PostService postService;
+    private final UserStatsService userStatsService;
 
     /**
-     * Constructor-based dependency injection for UserService and PostService.
+     * Constructor-based dependency injection for UserService, PostService and UserStatsService.
      */
     @Autowired
-    public ProfileController(UserService userService, PostService postService) {
+    public ProfileController(UserService userService, PostService postService,
+            UserStatsService userStatsService) {
         this.userService = userService;
         this.postService = postService;
+        this.userStatsService = userStatsService;
     }
 
     /**
@@ -70,6 +75,13 @@ public class ProfileController {
             // Get posts from the specific user
             Long targetUserId = Long.parseLong(userId);
             Long currentUserId = Long.parseLong(currentUser.getUserId());
+
+            // Header counters come from user_stats in one primary-key lookup.
+            UserStats profile = userStatsService.getStats(targetUserId.intValue());
+            if (profile != null) {
+                mv.addObject("profile", profile);
+            }
+
             List<Post> posts = postService.getPostsByUser(targetUserId, currentUserId);
             mv.addObject("posts", posts);
 
@@ -0,0 +1,81 @@
+/**
+Copyright (c) 2024 Sami Menik, PhD. All rights reserved.
+
+This is a project developed by Dr. Menik to give the students an opportunity to apply database concepts learned in the class in a real world project. Permission is granted to host a running version of this software and to use images or videos of this work solely for the purpose of demonstrating the work to potential employers. Any form of reproduction, distribution, or transmission of the software's source code, in part or whole, without the prior written consent of the copyright owner, is strictly prohibited.
+*/
+package uga.menik.csx370.controllers;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.ModelAndView;
+
+import uga.menik.csx370.models.Post;
+import uga.menik.csx370.models.PostPage;
+import uga.menik.csx370.models.User;
+import uga.menik.csx370.services.PostService;
+import uga.menik.csx370.services.UserService;
+
+/**
+ * Handles /search URL, which searches the text of posts.
+ */
+@Controller
+@RequestMapping("/search")
+public class SearchController {
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private UserService userService;
+
+    /**
+     * This function handles the /search URL.
+     * q holds the words to look for; page is the page of results to show, starting at 1.
+     */
+    @GetMapping
+    public ModelAndView webpage(@RequestParam(name = "q", defaultValue = "") String query,
+                                @RequestParam(name = "page", required = false) String page) {
+        System.out.println("User is searching posts: " + query);
+
+        ModelAndView mv = new ModelAndView("posts_page");
+
+        try {
+            // Get the logged-in user
+            User loggedInUser = userService.getLoggedInUser();
+            if (loggedInUser == null) {
+                mv.setViewName("redirect:/login");
+                return mv;
+            }
+            mv.addObject("searchQuery", query);
+
+            Long userId = Long.parseLong(loggedInUser.getUserId());
+            PostPage result = postService.searchPosts(query, userId, page);
+            List<Post> posts = result.getPosts();
+            mv.addObject("posts", posts);
+            if (result.hasMore()) {
+                mv.addObject("nextPageUrl", "/search?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)
+                        + "&page=" + result.getNextCursor());
+            }
+
+            // If no posts found, show no content message
+            if (posts.isEmpty()) {
+                mv.addObject("isNoContent", true);
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            mv.addObject("posts", new ArrayList<Post>());
+            mv.addObject("errorMessage", "Search failed. Please try again.");
+        }
+
+        return mv;
+    }
+}
@@ -5,24 +5,66 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.beans.factory.annotation.Autowired;
+import uga.menik.csx370.components.PageComposer;
+import uga.menik.csx370.services.HashtagTrendService;
 import uga.menik.csx370.services.TrendingService;
 
+import java.util.ArrayList;
+import java.util.List;
+import uga.menik.csx370.services.TrendingCacheService;
+
 @Controller
 public class TrendingController {
 
+    // Trending results are the same for every viewer, so they are served from a shared cache.
+    @Autowired
+    private TrendingCacheService trendingCacheService;
+
     @Autowired
-    private TrendingService trendingService;
+    private PageComposer pageComposer;
 
     @GetMapping("/trending")
     public ModelAndView page(
             @RequestParam(name = "days",  defaultValue = "7")  int days,
-            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+            @RequestParam(name = "limit", defaultValue = "10") int limit,
+            @RequestParam(name = "mode",  required = false) String mode,
+            @RequestParam(name = "sort",  defaultValue = "likes") String sort) {
 
         ModelAndView mv = new ModelAndView("trending_page");
         mv.addObject("days", days);
         mv.addObject("limit", limit);
-        mv.addObject("trendingHashtags", trendingService.getTopHashtags(days, limit));
-        mv.addObject("popularPosts",     trendingService.getMostLikedPosts(days, limit));
+
+        boolean approximate = mode == null ? trendingCacheService.isApproximateByDefault() : "approx".equalsIgnoreCase(mode);
+        boolean hot = "hot".equalsIgnoreCase(sort);
+
+        // The hashtag and post lists are independent; load them side by side.
+        PageComposer.Composition page = pageComposer.begin("trending");
+        PageComposer.Call<HashtagTrendService.ApproximateTrends> approxCall = approximate
+                ? page.fork("approx_hashtags", () -> trendingCacheService.getApproximateTopHashtags(days, limit))
+                : null;
+        PageComposer.Call<List<TrendingService.TagTrend>> hashtagsCall = approximate
+                ? null
+                : page.fork("hashtags", () -> trendingCacheService.getTopHashtags(days, limit));
+        PageComposer.Call<List<TrendingService.PopularPost>> postsCall = hot
+                ? page.fork("hot_posts", () -> trendingCacheService.getHotPosts(days, limit))
+                : page.fork("liked_posts", () -> trendingCacheService.getMostLikedPosts(days, limit));
+
+        HashtagTrendService.ApproximateTrends approx = approxCall == null ? null : page.join(approxCall, null);
+        if (approx != null) {
+            mv.addObject("trendingHashtags", approx.trends);
+            mv.addObject("isApproximate", true);
+            mv.addObject("errorBound", approx.errorBound);
+            mv.addObject("confidencePercent", String.format("%.0f", approx.confidencePercent));
+        } else {
+            // Exact counts, also used when the approximate window cannot cover the request.
+            mv.addObject("trendingHashtags", hashtagsCall != null
+                    ? page.join(hashtagsCall, new ArrayList<>())
+                    : trendingCacheService.getTopHashtags(days, limit));
+        }
+        if (hot) {
+            mv.addObject("isHotSort", true);
+        }
+        mv.addObject("popularPosts", page.join(postsCall, new ArrayList<>()));
         return mv;
     }
 }
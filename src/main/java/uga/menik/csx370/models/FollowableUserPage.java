@@ -0,0 +1,57 @@
+package uga.menik.csx370.models;
+
+import java.util.List;
+
+/**
+ * One page of followable users plus the cursor that fetches the page after it.
+ */
+public class FollowableUserPage {
+
+    /**
+     * Users on this page, in display order.
+     */
+    private final List<FollowableUser> users;
+
+    /**
+     * Cursor for the next page, or null when this is the last page.
+     */
+    private final String nextCursor;
+
+    /**
+     * Constructs a FollowableUserPage.
+     *
+     * @param users      the users on this page
+     * @param nextCursor the cursor for the next page, null if there is none
+     */
+    public FollowableUserPage(List<FollowableUser> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the users on this page.
+     *
+     * @return the users
+     */
+    public List<FollowableUser> getUsers() {
+        return users;
+    }
+
+    /**
+     * Returns the cursor for the next page.
+     *
+     * @return the next cursor, or null on the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Returns whether there are more users after this page.
+     *
+     * @return true if a next page exists
+     */
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,57 @@
+package uga.menik.csx370.models;
+
+import java.util.List;
+
+/**
+ * One page of posts plus the cursor that fetches the page after it.
+ */
+public class PostPage {
+
+    /**
+     * Posts on this page, in display order.
+     */
+    private final List<Post> posts;
+
+    /**
+     * Cursor for the next page, or null when this is the last page.
+     */
+    private final String nextCursor;
+
+    /**
+     * Constructs a PostPage.
+     *
+     * @param posts      the posts on this page
+     * @param nextCursor the cursor for the next page, null if there is none
+     */
+    public PostPage(List<Post> posts, String nextCursor) {
+        this.posts = posts;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the posts on this page.
+     *
+     * @return the posts
+     */
+    public List<Post> getPosts() {
+        return posts;
+    }
+
+    /**
+     * Returns the cursor for the next page.
+     *
+     * @return the next cursor, or null on the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Returns whether there are more posts after this page.
+     *
+     * @return true if a next page exists
+     */
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,38 @@
+package uga.menik.csx370.models;
+
+/**
+ * A user recommended to the session user, with how many of the session
+ * user's followees already follow them.
+ */
+public class SuggestedUser extends FollowableUser {
+
+    /**
+     * Number of the session user's followees who follow this user. Estimated
+     * when the traversal had to sample.
+     */
+    private final int mutualCount;
+
+    /**
+     * Constructs a SuggestedUser. Suggested users are never already followed.
+     *
+     * @param userId         the unique identifier of the user
+     * @param firstName      the first name of the user
+     * @param lastName       the last name of the user
+     * @param lastActiveDate the date and time that this user has last made a post
+     * @param mutualCount    how many of the session user's followees follow this user
+     */
+    public SuggestedUser(String userId, String firstName, String lastName, String lastActiveDate,
+            int mutualCount) {
+        super(userId, firstName, lastName, false, lastActiveDate);
+        this.mutualCount = mutualCount;
+    }
+
+    /**
+     * Returns how many of the session user's followees follow this user.
+     *
+     * @return the mutual follow count
+     */
+    public int getMutualCount() {
+        return mutualCount;
+    }
+}
@@ -0,0 +1,83 @@
+package uga.menik.csx370.models;
+
+/**
+ * A user plus the counters shown in their profile header.
+ */
+public class UserStats extends User {
+
+    /**
+     * Number of users following this user.
+     */
+    private final int followersCount;
+
+    /**
+     * Number of users this user follows.
+     */
+    private final int followingCount;
+
+    /**
+     * Number of posts this user has made.
+     */
+    private final int postsCount;
+
+    /**
+     * Number of likes on all of this user's posts.
+     */
+    private final int likesReceived;
+
+    /**
+     * Constructs a UserStats.
+     *
+     * @param userId         the unique identifier of the user
+     * @param firstName      the first name of the user
+     * @param lastName       the last name of the user
+     * @param followersCount the number of followers
+     * @param followingCount the number of users followed
+     * @param postsCount     the number of posts
+     * @param likesReceived  the number of likes on the user's posts
+     */
+    public UserStats(String userId, String firstName, String lastName, int followersCount,
+            int followingCount, int postsCount, int likesReceived) {
+        super(userId, firstName, lastName);
+        this.followersCount = followersCount;
+        this.followingCount = followingCount;
+        this.postsCount = postsCount;
+        this.likesReceived = likesReceived;
+    }
+
+    /**
+     * Returns the number of followers.
+     *
+     * @return the follower count
+     */
+    public int getFollowersCount() {
+        return followersCount;
+    }
+
+    /**
+     * Returns the number of users followed.
+     *
+     * @return the following count
+     */
+    public int getFollowingCount() {
+        return followingCount;
+    }
+
+    /**
+     * Returns the number of posts.
+     *
+     * @return the post count
+     */
+    public int getPostsCount() {
+        return postsCount;
+    }
+
+    /**
+     * Returns the number of likes on the user's posts.
+     *
+     * @return the likes received
+     */
+    public int getLikesReceived() {
+        return likesReceived;
+    }
+}
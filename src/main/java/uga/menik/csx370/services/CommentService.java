@@ -15,20 +15,41 @@ public class CommentService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    /**
+     * Inserts a comment and bumps the post's comments_count in post_stats.
+     * Both statements run in one transaction so the counter never drifts
+     * from the comment table.
+     */
     public void addComment(Long userId, Long postId, String content) {
         if (content == null || content.trim().isEmpty())
             throw new IllegalArgumentException("Comment cannot be empty.");
 
         String sql = "INSERT INTO comment (user_id, post_id, content, created_at) VALUES (?, ?, ?, ?)";
+        String statsSql = "INSERT INTO post_stats (post_id, comments_count) VALUES (?, 1) " +
+                          "ON DUPLICATE KEY UPDATE comments_count = comments_count + 1, engaged_at = CURRENT_TIMESTAMP";
 
-        try (Connection conn = jdbcTemplate.getDataSource().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = jdbcTemplate.getDataSource().getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 PreparedStatement statsStmt = conn.prepareStatement(statsSql)) {
 
-            stmt.setLong(1, userId);
-            stmt.setLong(2, postId);
-            stmt.setString(3, content.trim());
-            stmt.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
-            stmt.executeUpdate();
+                stmt.setLong(1, userId);
+                stmt.setLong(2, postId);
+                stmt.setString(3, content.trim());
+                stmt.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                stmt.executeUpdate();
+
+                statsStmt.setLong(1, postId);
+                statsStmt.executeUpdate();
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
             System.out.println("Comment inserted successfully!");
 
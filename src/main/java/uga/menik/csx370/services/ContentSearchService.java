@@ -0,0 +1,307 @@
+package uga.menik.csx370.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import uga.menik.csx370.utility.Bm25Index;
+
+/**
+ * Full-text search over post content.
+ *
+ * Posts are kept in an in-memory Bm25Index. createPost adds every committed
+ * post. The index is saved to app.search.index-file periodically and on
+ * shutdown. At startup it is read back and then caught up from post: every
+ * post past the saved maximum post_id, plus posts created shortly before the
+ * save in case they committed after it. Without a file the whole table is
+ * indexed once.
+ *
+ * Until the index is ready, searches fall back to a LIKE query on post.
+ */
+@Service
+public class ContentSearchService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+
+    private final Path indexFile;
+
+    private final int maxResults;
+
+    private final int graceSeconds;
+
+    private final Timer searchTimer;
+
+    // Guarded by lock.
+    private Bm25Index index = new Bm25Index();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Posts added before warm-up finished, replayed once the index is loaded.
+    // Guarded by this.
+    private List<Object[]> pendingPosts = new ArrayList<>();
+
+    private volatile boolean ready = false;
+
+    // Posts added while a save is writing the index, applied once it is done.
+    // Non-null only during a save. Guarded by lock.
+    private List<Object[]> savingPosts = null;
+
+    // Whether posts were added since the last save.
+    private volatile boolean dirty = false;
+
+    @Autowired
+    public ContentSearchService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                                @Value("${app.search.enabled:true}") boolean enabled,
+                                @Value("${app.search.index-file:data/search-index.bin}") String indexFile,
+                                @Value("${app.search.max-results:1000}") int maxResults,
+                                @Value("${app.search.grace-seconds:60}") int graceSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.indexFile = Paths.get(indexFile);
+        this.maxResults = maxResults;
+        this.graceSeconds = graceSeconds;
+        this.searchTimer = Timer.builder("search.query")
+                .description("Content search queries answered from the index")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("search.index.posts", this, s -> s.indexedPosts())
+                .description("Posts in the content search index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indexes one committed post.
+     */
+    public void addPost(long postId, String content) {
+        if (!enabled) {
+            return;
+        }
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    if (pendingPosts != null) {
+                        pendingPosts.add(new Object[] { postId, content });
+                    }
+                    return;
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (savingPosts != null) {
+                savingPosts.add(new Object[] { postId, content });
+                return;
+            }
+            index.add(postId, content);
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the posts best matching query, skipping the first
+     * offset and returning at most limit. Results past app.search.max-results
+     * are not ranked. Until the index is loaded, the newest posts containing
+     * query as typed are returned instead.
+     */
+    public List<Long> search(String query, int offset, int limit) {
+        if (offset >= maxResults) {
+            return new ArrayList<>();
+        }
+        limit = Math.min(limit, maxResults - offset);
+        if (!enabled || !ready) {
+            return jdbcTemplate.queryForList(
+                    "SELECT post_id FROM post WHERE content LIKE ? ORDER BY post_id DESC LIMIT ? OFFSET ?",
+                    Long.class, "%" + escapeLike(query) + "%", limit, offset);
+        }
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            return index.search(query, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private int indexedPosts() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the saved index, if any, and catches it up from post.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Bm25Index loaded = null;
+            long savedAt = 0;
+            if (Files.exists(indexFile)) {
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(Files.newInputStream(indexFile), 1 << 16))) {
+                    savedAt = in.readLong();
+                    loaded = Bm25Index.readFrom(in);
+                } catch (IOException e) {
+                    // Unreadable or outdated file; index everything again.
+                    e.printStackTrace();
+                    loaded = null;
+                }
+            }
+            Bm25Index built = loaded != null ? loaded : new Bm25Index();
+            int fromFile = built.size();
+
+            // Posts the loaded index already has are skipped by Bm25Index.add.
+            Timestamp since = new Timestamp(loaded != null ? savedAt - graceSeconds * 1000L : 0);
+            jdbcTemplate.query(
+                    "SELECT post_id, content FROM post WHERE post_id > ? OR created_at >= ? ORDER BY post_id",
+                    rs -> {
+                        built.add(rs.getLong("post_id"), rs.getString("content"));
+                    }, built.getMaxPostId(), since);
+
+            synchronized (this) {
+                for (Object[] post : pendingPosts) {
+                    built.add((Long) post[0], (String) post[1]);
+                }
+                lock.writeLock().lock();
+                try {
+                    index = built;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                pendingPosts = null;
+                ready = true;
+            }
+            dirty = built.size() != fromFile;
+            System.out.println("Search index ready in " + (System.currentTimeMillis() - start) + " ms: "
+                    + fromFile + " posts from file, " + (built.size() - fromFile) + " caught up");
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Stay on the SQL path; stop buffering posts that will never be replayed.
+            synchronized (this) {
+                pendingPosts = null;
+            }
+        }
+    }
+
+    /**
+     * Saves the index if posts were added since the last save.
+     */
+    @Scheduled(initialDelayString = "${app.search.save-interval-ms:300000}",
+               fixedDelayString = "${app.search.save-interval-ms:300000}")
+    public void scheduledSave() {
+        try {
+            save();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @PreDestroy
+    public void saveOnShutdown() {
+        try {
+            save();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file and moves it over the old one, so
+     * a crash mid-write leaves the previous save intact. Posts added during
+     * the write are held back and applied afterwards, so neither addPost nor
+     * searches wait for the file.
+     */
+    private void save() throws IOException {
+        if (!ready || !dirty) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Path parent = indexFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Bm25Index snapshot;
+        lock.writeLock().lock();
+        try {
+            if (savingPosts != null) {
+                // Another save is already writing.
+                return;
+            }
+            savingPosts = new ArrayList<>();
+            dirty = false;
+            snapshot = index;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        boolean saved = false;
+        int posts;
+        try {
+            // Nothing modifies snapshot until savingPosts is cleared.
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeLong(System.currentTimeMillis());
+                snapshot.writeTo(out);
+            }
+            posts = snapshot.size();
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            saved = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                for (Object[] post : savingPosts) {
+                    if (index.add((Long) post[0], (String) post[1])) {
+                        dirty = true;
+                    }
+                }
+                savingPosts = null;
+                if (!saved) {
+                    dirty = true;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        System.out.println("Search index saved in " + (System.currentTimeMillis() - start) + " ms, "
+                + posts + " posts");
+    }
+}
@@ -0,0 +1,339 @@
+package uga.menik.csx370.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import uga.menik.csx370.models.PostPage;
+import uga.menik.csx370.utility.KeysetCursor;
+
+/**
+ * Assembles the home feed.
+ *
+ * When the in-memory RecentPostStore can answer, the page's post ids come
+ * from a heap merge over the followees' recent-post rings and MySQL is only
+ * asked to load that page (memory path). Otherwise, most posts reach a viewer
+ * through their materialized timeline (push path); in hybrid mode, posts by
+ * high-follower authors are never fanned out and are read straight from the
+ * post table for the followees that need it (pull path). Those sources are
+ * already sorted newest first, so one page is produced by a k-way merge that
+ * stops after page size + 1 entries, and only that page is loaded through
+ * PostHydrationService.
+ */
+@Service
+public class FeedService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostHydrationService postHydrationService;
+
+    @Autowired
+    private HighFollowerService highFollowerService;
+
+    @Autowired
+    private RecentPostStore recentPostStore;
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
+    // Number of posts shown per home feed page.
+    @Value("${app.feed.page-size:20}")
+    private int feedPageSize;
+
+    private final Counter pushedPosts;
+    private final Counter pulledPosts;
+    private final Counter memoryPosts;
+    private final Counter memoryFallbacks;
+
+    @Autowired
+    public FeedService(MeterRegistry meterRegistry) {
+        this.pushedPosts = Counter.builder("feed.posts")
+                .tag("path", "push")
+                .description("Feed entries served from materialized timelines")
+                .register(meterRegistry);
+        this.pulledPosts = Counter.builder("feed.posts")
+                .tag("path", "pull")
+                .description("Feed entries served by reading high-follower authors at request time")
+                .register(meterRegistry);
+        this.memoryPosts = Counter.builder("feed.posts")
+                .tag("path", "memory")
+                .description("Feed entries served from the in-memory recent post store")
+                .register(meterRegistry);
+        this.memoryFallbacks = Counter.builder("feed.memory.fallbacks")
+                .description("Feed pages the recent post store could not answer")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A feed candidate: just enough to order and page, before the post is loaded.
+     */
+    private static final class FeedEntry {
+        final long postId;
+        final long createdAt;
+        final boolean pulled;
+
+        FeedEntry(long postId, long createdAt, boolean pulled) {
+            this.postId = postId;
+            this.createdAt = createdAt;
+            this.pulled = pulled;
+        }
+    }
+
+    /**
+     * Returns one page of the home feed: posts from users that userId follows,
+     * newest first. The page is located by a keyset cursor on (created_at, post_id)
+     * instead of an offset, so a page deep in the feed costs the same as the first.
+     * Pass a null cursor for the first page.
+     */
+    public PostPage getPostsFromFollowing(Long userId, String cursor) {
+        KeysetCursor after = KeysetCursor.parse(cursor);
+        // One extra entry tells us whether another page exists.
+        int want = feedPageSize + 1;
+
+        if (recentPostStore.isReady()) {
+            PostPage page = getPostsFromMemory(userId, after, want);
+            if (page != null) {
+                return page;
+            }
+            memoryFallbacks.increment();
+        }
+
+        List<List<FeedEntry>> sources = new ArrayList<>();
+        sources.add(readTimeline(userId, after, want));
+
+        List<Integer> pulledAuthors = findPulledFollowees(userId);
+        if (!pulledAuthors.isEmpty()) {
+            sources.addAll(readAuthors(pulledAuthors, after, want));
+        }
+
+        List<FeedEntry> merged = mergeNewestFirst(sources, want);
+        boolean hasMore = merged.size() > feedPageSize;
+        if (hasMore) {
+            merged = merged.subList(0, feedPageSize);
+        }
+
+        List<Long> ids = new ArrayList<>(merged.size());
+        for (FeedEntry entry : merged) {
+            ids.add(entry.postId);
+            (entry.pulled ? pulledPosts : pushedPosts).increment();
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            FeedEntry last = merged.get(merged.size() - 1);
+            nextCursor = new KeysetCursor(last.createdAt, last.postId).toString();
+        }
+        return new PostPage(postHydrationService.hydratePosts(ids, userId), nextCursor);
+    }
+
+    /**
+     * Builds the page from the followees' recent-post rings.
+     * Returns null if the rings do not reach far enough back for this page.
+     */
+    private PostPage getPostsFromMemory(Long userId, KeysetCursor after, int want) {
+        List<Integer> followees = followGraphService.isReady()
+                ? followGraphService.getFollowees(userId.intValue())
+                : jdbcTemplate.queryForList("SELECT followee_id FROM follow WHERE follower_id = ?", Integer.class, userId);
+        RecentPostStore.MergeResult merged = recentPostStore.mergeNewestFirst(followees, after, want);
+        if (merged == null) {
+            return null;
+        }
+
+        int count = Math.min(merged.size, feedPageSize);
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(merged.postIds[i]);
+        }
+        memoryPosts.increment(count);
+
+        String nextCursor = null;
+        if (merged.size > feedPageSize) {
+            nextCursor = new KeysetCursor(merged.createdAt[count - 1], merged.postIds[count - 1]).toString();
+        }
+        return new PostPage(postHydrationService.hydratePosts(ids, userId), nextCursor);
+    }
+
+    /**
+     * Reads up to limit entries from the viewer's materialized timeline.
+     */
+    private List<FeedEntry> readTimeline(Long userId, KeysetCursor after, int limit) {
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT t.post_id, t.created_at FROM timeline t WHERE t.user_id = ? ");
+        if (after != null) {
+            sql.append("AND (t.created_at < ? OR (t.created_at = ? AND t.post_id < ?)) ");
+        }
+        sql.append("ORDER BY t.created_at DESC, t.post_id DESC LIMIT ?");
+
+        List<Object> params = new ArrayList<>();
+        params.add(userId);
+        addCursorParams(params, after);
+        params.add(limit);
+
+        return queryEntries(sql.toString(), params, false);
+    }
+
+    /**
+     * Reads up to limit entries per pulled author straight from the post table.
+     * Each author is its own index range scan on (user_id, created_at, post_id),
+     * combined with UNION ALL into one round trip. UNION ALL does not keep
+     * the branches in order, so the combined rows (at most limit per author)
+     * are sorted by author, newest first, before they are grouped.
+     */
+    private List<List<FeedEntry>> readAuthors(List<Integer> authorIds, KeysetCursor after, int limit) {
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        for (int i = 0; i < authorIds.size(); i++) {
+            if (i > 0) sql.append(" UNION ALL ");
+            sql.append("(SELECT p.user_id, p.post_id, p.created_at FROM post p WHERE p.user_id = ? ");
+            if (after != null) {
+                sql.append("AND (p.created_at < ? OR (p.created_at = ? AND p.post_id < ?)) ");
+            }
+            sql.append("ORDER BY p.created_at DESC, p.post_id DESC LIMIT ?)");
+            params.add(authorIds.get(i));
+            addCursorParams(params, after);
+            params.add(limit);
+        }
+        sql.append(" ORDER BY user_id, created_at DESC, post_id DESC");
+
+        List<List<FeedEntry>> perAuthor = new ArrayList<>();
+        try (Connection conn = jdbcTemplate.getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                int currentAuthor = -1;
+                List<FeedEntry> current = null;
+                while (rs.next()) {
+                    int authorId = rs.getInt("user_id");
+                    if (current == null || authorId != currentAuthor) {
+                        current = new ArrayList<>();
+                        perAuthor.add(current);
+                        currentAuthor = authorId;
+                    }
+                    current.add(new FeedEntry(rs.getLong("post_id"),
+                            rs.getTimestamp("created_at").getTime(), true));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return perAuthor;
+    }
+
+    /**
+     * Returns the high-follower authors that userId follows.
+     * The pulled set is small, so this is a handful of edge tests on the
+     * follow graph, or primary key lookups on follow until it is loaded.
+     */
+    private List<Integer> findPulledFollowees(Long userId) {
+        Set<Integer> pulled = highFollowerService.getPulledAuthors();
+        if (pulled.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (followGraphService.isReady()) {
+            List<Integer> followed = new ArrayList<>();
+            for (Integer authorId : pulled) {
+                if (followGraphService.isFollowing(userId.intValue(), authorId)) {
+                    followed.add(authorId);
+                }
+            }
+            return followed;
+        }
+        StringBuilder sql = new StringBuilder(
+                "SELECT followee_id FROM follow WHERE follower_id = ? AND followee_id IN (");
+        List<Object> params = new ArrayList<>();
+        params.add(userId);
+        int i = 0;
+        for (Integer authorId : pulled) {
+            if (i++ > 0) sql.append(", ");
+            sql.append("?");
+            params.add(authorId);
+        }
+        sql.append(")");
+        return jdbcTemplate.queryForList(sql.toString(), Integer.class, params.toArray());
+    }
+
+    /**
+     * Merges lists that are each sorted newest first into one list of at most
+     * limit entries, newest first. A post seen in more than one list is kept once;
+     * that happens right after an author crosses the follower threshold, while
+     * their older posts are still in timelines.
+     */
+    private List<FeedEntry> mergeNewestFirst(List<List<FeedEntry>> sources, int limit) {
+        // Heap of {source index, position}, ordered by the entry at that position.
+        PriorityQueue<int[]> heap = new PriorityQueue<>((a, b) -> {
+            FeedEntry x = sources.get(a[0]).get(a[1]);
+            FeedEntry y = sources.get(b[0]).get(b[1]);
+            if (x.createdAt != y.createdAt) {
+                return Long.compare(y.createdAt, x.createdAt);
+            }
+            return Long.compare(y.postId, x.postId);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            if (!sources.get(i).isEmpty()) {
+                heap.add(new int[] { i, 0 });
+            }
+        }
+
+        List<FeedEntry> out = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        while (!heap.isEmpty() && out.size() < limit) {
+            int[] head = heap.poll();
+            List<FeedEntry> source = sources.get(head[0]);
+            FeedEntry entry = source.get(head[1]);
+            if (seen.add(entry.postId)) {
+                out.add(entry);
+            }
+            if (head[1] + 1 < source.size()) {
+                head[1]++;
+                heap.add(head);
+            }
+        }
+        return out;
+    }
+
+    private List<FeedEntry> queryEntries(String sql, List<Object> params, boolean pulled) {
+        List<FeedEntry> entries = new ArrayList<>();
+        try (Connection conn = jdbcTemplate.getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new FeedEntry(rs.getLong("post_id"),
+                            rs.getTimestamp("created_at").getTime(), pulled));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return entries;
+    }
+
+    private static void addCursorParams(List<Object> params, KeysetCursor after) {
+        if (after != null) {
+            Timestamp afterTime = new Timestamp(after.getSortKey());
+            params.add(afterTime);
+            params.add(afterTime);
+            params.add(after.getId());
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package uga.menik.csx370.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import uga.menik.csx370.utility.CsrGraph;
+
+/**
+ * In-memory copy of the follow table.
+ *
+ * Followees and followers are each a CsrGraph loaded at startup. follow and
+ * unfollow do not touch those arrays; they go into a small overlay of recent
+ * edge changes (the active delta) that reads consult first. A periodic
+ * compaction freezes the active delta, merges it into new arrays off the lock
+ * and swaps them in; writes during the merge go to a fresh active delta, and
+ * reads check active, then frozen, then the arrays. A slower periodic
+ * rebuild reloads the arrays from the follow table outright, so edges the
+ * overlay got wrong (a follow committed without its callback, say) do not
+ * stay wrong.
+ *
+ * Reads take the shared lock and do not allocate when the overlay is empty:
+ * edge tests are a binary search, counts are O(1) and neighbour lists are
+ * copied into a caller-provided buffer. Until the graph is loaded, callers
+ * check isReady and use SQL.
+ */
+@Service
+public class FollowGraphService {
+
+    /**
+     * Edge changes on top of the arrays. Each change is recorded relative to
+     * the state it was applied to, so the count changes are exact.
+     */
+    private static final class Delta {
+        // (follower << 32 | followee) -> true for follow, false for unfollow.
+        final Map<Long, Boolean> edges = new HashMap<>();
+        // Followees (followers) with an entry in edges, per follower (followee).
+        final Map<Integer, List<Integer>> followeesTouched = new HashMap<>();
+        final Map<Integer, List<Integer>> followersTouched = new HashMap<>();
+        final Map<Integer, Integer> followeeCountChange = new HashMap<>();
+        final Map<Integer, Integer> followerCountChange = new HashMap<>();
+
+        void record(int follower, int followee, boolean following) {
+            if (edges.put(key(follower, followee), following) == null) {
+                followeesTouched.computeIfAbsent(follower, u -> new ArrayList<>()).add(followee);
+                followersTouched.computeIfAbsent(followee, u -> new ArrayList<>()).add(follower);
+            }
+            int change = following ? 1 : -1;
+            followeeCountChange.merge(follower, change, Integer::sum);
+            followerCountChange.merge(followee, change, Integer::sum);
+        }
+
+        Boolean get(int follower, int followee) {
+            return edges.isEmpty() ? null : edges.get(key(follower, followee));
+        }
+    }
+
+    private static long key(int follower, int followee) {
+        return ((long) follower << 32) | (followee & 0xFFFFFFFFL);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+
+    private final int compactThreshold;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // All guarded by lock.
+    private CsrGraph followees = CsrGraph.empty();
+    private CsrGraph followers = CsrGraph.empty();
+    private Delta frozen = new Delta();
+    private Delta active = new Delta();
+
+    // Changes made before warm-up finished, replayed in order once the arrays are loaded.
+    // Guarded by this.
+    private List<Object[]> pendingChanges = new ArrayList<>();
+
+    private volatile boolean ready = false;
+
+    @Autowired
+    public FollowGraphService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                              @Value("${app.follow-graph.enabled:true}") boolean enabled,
+                              @Value("${app.follow-graph.compact-threshold:10000}") int compactThreshold) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.compactThreshold = compactThreshold;
+        Gauge.builder("follow.graph.edges", this, s -> s.edgeCount())
+                .description("Follow edges in the in-memory graph arrays")
+                .register(meterRegistry);
+        Gauge.builder("follow.graph.delta", this, s -> s.deltaSize())
+                .description("Follow changes waiting in the overlay for compaction")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns whether the graph is loaded. Until then the other reads return nothing.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Records a committed follow.
+     */
+    public void follow(int follower, int followee) {
+        apply(follower, followee, true);
+    }
+
+    /**
+     * Records a committed unfollow.
+     */
+    public void unfollow(int follower, int followee) {
+        apply(follower, followee, false);
+    }
+
+    private void apply(int follower, int followee, boolean following) {
+        if (!enabled) {
+            return;
+        }
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    if (pendingChanges != null) {
+                        pendingChanges.add(new Object[] { follower, followee, following });
+                    }
+                    return;
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (isFollowingLocked(follower, followee) != following) {
+                active.record(follower, followee, following);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns whether follower follows followee.
+     */
+    public boolean isFollowing(int follower, int followee) {
+        lock.readLock().lock();
+        try {
+            return isFollowingLocked(follower, followee);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isFollowingLocked(int follower, int followee) {
+        Boolean changed = active.get(follower, followee);
+        if (changed == null) {
+            changed = frozen.get(follower, followee);
+        }
+        return changed != null ? changed : followees.hasEdge(follower, followee);
+    }
+
+    /**
+     * Returns how many users userId follows.
+     */
+    public int followeeCount(int userId) {
+        lock.readLock().lock();
+        try {
+            return followees.degree(userId) + countChange(frozen.followeeCountChange, userId)
+                    + countChange(active.followeeCountChange, userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns how many followers userId has.
+     */
+    public int followerCount(int userId) {
+        lock.readLock().lock();
+        try {
+            return followers.degree(userId) + countChange(frozen.followerCountChange, userId)
+                    + countChange(active.followerCountChange, userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int countChange(Map<Integer, Integer> changes, int userId) {
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        Integer change = changes.get(userId);
+        return change == null ? 0 : change;
+    }
+
+    /**
+     * Copies the users userId follows into out, as many as fit, and returns
+     * how many there are in total. The order is unspecified.
+     */
+    public int copyFollowees(int userId, int[] out) {
+        lock.readLock().lock();
+        try {
+            return copy(followees, userId, out, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the followers of userId into out, as many as fit, and returns
+     * how many there are in total. The order is unspecified.
+     */
+    public int copyFollowers(int userId, int[] out) {
+        lock.readLock().lock();
+        try {
+            return copy(followers, userId, out, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the users userId follows as a list, for callers that need one.
+     */
+    public List<Integer> getFollowees(int userId) {
+        int[] buffer = new int[Math.max(0, followeeCount(userId))];
+        int count = copyFollowees(userId, buffer);
+        if (count > buffer.length) {
+            // Followed someone in between; read again with room for them.
+            buffer = new int[count];
+            count = Math.min(copyFollowees(userId, buffer), buffer.length);
+        }
+        List<Integer> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(buffer[i]);
+        }
+        return list;
+    }
+
+    private int copy(CsrGraph base, int u, int[] out, boolean outgoing) {
+        int count = 0;
+        int start = base.rowStart(u);
+        int end = start + base.degree(u);
+        for (int i = start; i < end; i++) {
+            int v = base.target(i);
+            if (edgeAfterOverlays(u, v, outgoing, true)) {
+                if (count < out.length) {
+                    out[count] = v;
+                }
+                count++;
+            }
+        }
+        count = copyAdded(frozen, base, u, out, count, outgoing);
+        count = copyAdded(active, base, u, out, count, outgoing);
+        return count;
+    }
+
+    /**
+     * Appends the edges of u that delta touched and the arrays lack, if they
+     * exist after the overlays. Edges the active delta also touched are left
+     * to the active pass, so nothing is counted twice.
+     */
+    private int copyAdded(Delta delta, CsrGraph base, int u, int[] out, int count, boolean outgoing) {
+        if (delta.edges.isEmpty()) {
+            return count;
+        }
+        List<Integer> touched = (outgoing ? delta.followeesTouched : delta.followersTouched).get(u);
+        if (touched == null) {
+            return count;
+        }
+        for (int v : touched) {
+            if (base.hasEdge(u, v)) {
+                continue;
+            }
+            if (delta == frozen && (outgoing ? active.get(u, v) : active.get(v, u)) != null) {
+                continue;
+            }
+            if (edgeAfterOverlays(u, v, outgoing, false)) {
+                if (count < out.length) {
+                    out[count] = v;
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether the edge between u and its neighbour v exists once the
+     * overlays are applied, given whether the arrays have it.
+     */
+    private boolean edgeAfterOverlays(int u, int v, boolean outgoing, boolean inBase) {
+        int follower = outgoing ? u : v;
+        int followee = outgoing ? v : u;
+        Boolean changed = active.get(follower, followee);
+        if (changed == null) {
+            changed = frozen.get(follower, followee);
+        }
+        return changed != null ? changed : inBase;
+    }
+
+    private int edgeCount() {
+        lock.readLock().lock();
+        try {
+            return followees.edgeCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int deltaSize() {
+        lock.readLock().lock();
+        try {
+            return frozen.edges.size() + active.edges.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the graph from the follow table.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            CsrGraph[] loaded = load();
+            CsrGraph loadedFollowees = loaded[0];
+            CsrGraph loadedFollowers = loaded[1];
+
+            synchronized (this) {
+                lock.writeLock().lock();
+                try {
+                    followees = loadedFollowees;
+                    followers = loadedFollowers;
+                    // Each change sets an edge outright, so replaying changes the load already saw is harmless.
+                    for (Object[] change : pendingChanges) {
+                        int follower = (Integer) change[0];
+                        int followee = (Integer) change[1];
+                        boolean following = (Boolean) change[2];
+                        if (isFollowingLocked(follower, followee) != following) {
+                            active.record(follower, followee, following);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                pendingChanges = null;
+                ready = true;
+            }
+            System.out.println("Follow graph loaded in " + (System.currentTimeMillis() - start) + " ms: "
+                    + loadedFollowees.edgeCount() + " edges, " + (loadedFollowees.byteSize() + loadedFollowers.byteSize()) + " bytes");
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Stay on the SQL path; stop buffering changes that will never be replayed.
+            synchronized (this) {
+                pendingChanges = null;
+            }
+        }
+    }
+
+    /**
+     * Merges the overlay into new arrays once it has grown past
+     * app.follow-graph.compact-threshold changes.
+     */
+    @Scheduled(initialDelayString = "${app.follow-graph.compact-interval-ms:60000}",
+               fixedDelayString = "${app.follow-graph.compact-interval-ms:60000}")
+    public void scheduledCompact() {
+        try {
+            if (ready && deltaSize() >= compactThreshold) {
+                compact();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Freezes the active delta and rebuilds the arrays with it.
+     */
+    public synchronized void compact() {
+        long start = System.currentTimeMillis();
+        CsrGraph base;
+        Delta merging;
+        lock.writeLock().lock();
+        try {
+            frozen = active;
+            active = new Delta();
+            base = followees;
+            merging = frozen;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Only this thread reads base and merging from here on; neither changes any more.
+        int capacity = base.edgeCount() + merging.edges.size();
+        int[] sources = new int[capacity];
+        int[] destinations = new int[capacity];
+        int count = 0;
+        for (int u = 0; u < base.nodeCount(); u++) {
+            int from = base.rowStart(u);
+            int to = from + base.degree(u);
+            for (int i = from; i < to; i++) {
+                int v = base.target(i);
+                if (!Boolean.FALSE.equals(merging.get(u, v))) {
+                    sources[count] = u;
+                    destinations[count] = v;
+                    count++;
+                }
+            }
+        }
+        for (Map.Entry<Long, Boolean> edge : merging.edges.entrySet()) {
+            int follower = (int) (edge.getKey() >>> 32);
+            int followee = (int) (long) edge.getKey();
+            // An unfollow and follow again leaves true on an edge the arrays already have.
+            if (edge.getValue() && !base.hasEdge(follower, followee)) {
+                sources[count] = follower;
+                destinations[count] = followee;
+                count++;
+            }
+        }
+        CsrGraph newFollowees = CsrGraph.build(sources, destinations, count);
+        CsrGraph newFollowers = CsrGraph.build(destinations, sources, count);
+
+        lock.writeLock().lock();
+        try {
+            followees = newFollowees;
+            followers = newFollowers;
+            frozen = new Delta();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Follow graph compacted in " + (System.currentTimeMillis() - start) + " ms: "
+                + merging.edges.size() + " changes merged, " + count + " edges");
+    }
+
+    /**
+     * Reloads the arrays from the follow table every
+     * app.follow-graph.rebuild-interval-ms.
+     */
+    @Scheduled(initialDelayString = "${app.follow-graph.rebuild-interval-ms:3600000}",
+               fixedDelayString = "${app.follow-graph.rebuild-interval-ms:3600000}")
+    public void scheduledRebuild() {
+        try {
+            if (ready) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replaces the arrays and the overlay with a fresh load of the follow
+     * table. Changes recorded while the table is read are kept and re-applied
+     * on top of the new arrays; each sets its edge outright, so it does not
+     * matter whether the load already saw it.
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            // Everything in the overlay so far is committed, so the load will see it.
+            frozen = active;
+            active = new Delta();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        CsrGraph[] loaded = null;
+        try {
+            loaded = load();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (loaded != null) {
+                    followees = loaded[0];
+                    followers = loaded[1];
+                    active = rebase(new Delta(), active);
+                } else {
+                    // Keep the overlay on the old arrays; compact expects frozen to be empty.
+                    active = rebase(frozen, active);
+                }
+                frozen = new Delta();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        System.out.println("Follow graph rebuilt in " + (System.currentTimeMillis() - start) + " ms: "
+                + loaded[0].edgeCount() + " edges");
+    }
+
+    /**
+     * Returns one delta recording, relative to the current arrays, the edges
+     * older and newer set, newer winning. Caller holds the write lock.
+     */
+    private Delta rebase(Delta older, Delta newer) {
+        Delta out = new Delta();
+        for (Map.Entry<Long, Boolean> edge : older.edges.entrySet()) {
+            if (!newer.edges.containsKey(edge.getKey())) {
+                recordIfChanged(out, edge.getKey(), edge.getValue());
+            }
+        }
+        for (Map.Entry<Long, Boolean> edge : newer.edges.entrySet()) {
+            recordIfChanged(out, edge.getKey(), edge.getValue());
+        }
+        return out;
+    }
+
+    private void recordIfChanged(Delta delta, long key, boolean following) {
+        int follower = (int) (key >>> 32);
+        int followee = (int) key;
+        if (followees.hasEdge(follower, followee) != following) {
+            delta.record(follower, followee, following);
+        }
+    }
+
+    /**
+     * Reads the follow table into followee and follower arrays.
+     */
+    private CsrGraph[] load() {
+        int[][] edges = { new int[1024], new int[1024] };
+        int[] count = { 0 };
+        jdbcTemplate.query("SELECT follower_id, followee_id FROM follow", rs -> {
+            if (count[0] == edges[0].length) {
+                edges[0] = Arrays.copyOf(edges[0], count[0] * 2);
+                edges[1] = Arrays.copyOf(edges[1], count[0] * 2);
+            }
+            edges[0][count[0]] = rs.getInt("follower_id");
+            edges[1][count[0]] = rs.getInt("followee_id");
+            count[0]++;
+        });
+        return new CsrGraph[] {
+            CsrGraph.build(edges[0], edges[1], count[0]),
+            CsrGraph.build(edges[1], edges[0], count[0])
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package uga.menik.csx370.services;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Process-wide two-way map between hashtags and their hashtag_id.
+ *
+ * Loaded from the hashtag table at startup and extended by createPost once a
+ * new tag has been committed. Tags are stored lowercase and interned, so each
+ * distinct tag is one String however many lookups hold it. Reads are lock-free;
+ * a miss (before warm-up, or a tag added outside this process) falls back to
+ * the hashtag table and caches the answer.
+ */
+@Service
+public class HashtagDictionary {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Integer> idsByTag = new ConcurrentHashMap<>();
+    private final Map<Integer, String> tagsById = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HashtagDictionary(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        Gauge.builder("hashtags.dictionary.size", idsByTag, Map::size)
+                .description("Hashtags held in the in-memory dictionary")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads every known hashtag. Runs before the other startup warm-ups,
+     * some of which read the dictionary.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void warm() {
+        try {
+            jdbcTemplate.query("SELECT hashtag_id, tag FROM hashtag", rs -> {
+                register(rs.getInt("hashtag_id"), rs.getString("tag"));
+            });
+            System.out.println("Hashtag dictionary loaded: " + idsByTag.size() + " tags");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the id held in memory for a lowercase tag, or null. Never queries the database.
+     */
+    public Integer peekId(String tag) {
+        return idsByTag.get(tag);
+    }
+
+    /**
+     * Returns the id of a lowercase tag, or null if no such hashtag exists.
+     */
+    public Integer getId(String tag) {
+        Integer id = idsByTag.get(tag);
+        if (id != null) {
+            return id;
+        }
+        List<Integer> found = jdbcTemplate.queryForList(
+                "SELECT hashtag_id FROM hashtag WHERE tag = ?", Integer.class, tag);
+        if (found.isEmpty()) {
+            return null;
+        }
+        register(found.get(0), tag);
+        return found.get(0);
+    }
+
+    /**
+     * Returns the ids of those tags that exist, keyed by tag.
+     */
+    public Map<String, Integer> getIds(Collection<String> tags) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (String tag : tags) {
+            Integer id = getId(tag);
+            if (id != null) {
+                ids.put(tag, id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the tag for a hashtag id, or null if no such hashtag exists.
+     */
+    public String getTag(int id) {
+        String tag = tagsById.get(id);
+        if (tag != null) {
+            return tag;
+        }
+        List<String> found = jdbcTemplate.queryForList(
+                "SELECT tag FROM hashtag WHERE hashtag_id = ?", String.class, id);
+        if (found.isEmpty()) {
+            return null;
+        }
+        register(id, found.get(0));
+        return tagsById.get(id);
+    }
+
+    /**
+     * Returns a copy of every hashtag held in memory, keyed by id.
+     */
+    public Map<Integer, String> snapshot() {
+        return new HashMap<>(tagsById);
+    }
+
+    /**
+     * Records a committed hashtag. Callers must only register rows that are
+     * already committed, or a rolled-back id could leak into later posts.
+     */
+    public void register(int id, String tag) {
+        String interned = tag.toLowerCase().intern();
+        tagsById.put(id, interned);
+        idsByTag.put(interned, id);
+    }
+}
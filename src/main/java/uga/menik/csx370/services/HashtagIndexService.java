@@ -0,0 +1,172 @@
+package uga.menik.csx370.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import uga.menik.csx370.utility.PostingList;
+
+/**
+ * In-memory inverted index from hashtag id to the posts that use it.
+ *
+ * Each hashtag has a PostingList of post ids. createPost adds every committed
+ * post, and the lists are rebuilt from post_hashtag at startup. Searches walk
+ * the lists newest post first and stop once they have a page of ids: "any"
+ * merges the lists, "all" intersects them by galloping the longer lists
+ * along the shortest one. Only that page is then loaded from the database.
+ */
+@Service
+public class HashtagIndexService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+
+    // Guarded by lock.
+    private Map<Integer, PostingList> lists = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Posts added before warm-up finished, replayed once the lists are built.
+    // Guarded by this.
+    private List<Object[]> pendingPosts = new ArrayList<>();
+
+    private volatile boolean ready = false;
+
+    @Autowired
+    public HashtagIndexService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                               @Value("${app.hashtag-index.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        Gauge.builder("hashtag.index.bytes", this, s -> s.byteSize())
+                .description("Bytes used by the hashtag posting lists")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indexes one committed post's hashtags.
+     */
+    public void addPost(long postId, List<Integer> hashtagIds) {
+        if (!enabled || hashtagIds.isEmpty()) {
+            return;
+        }
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    if (pendingPosts != null) {
+                        pendingPosts.add(new Object[] { postId, hashtagIds });
+                    }
+                    return;
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            add(lists, postId, hashtagIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to limit ids of posts below beforePostId, newest first, that
+     * use any (or, if matchAll, all) of the hashtags. Returns null when the
+     * index is not loaded; the caller then asks the database.
+     */
+    public List<Long> search(Collection<Integer> hashtagIds, boolean matchAll, long beforePostId, int limit) {
+        if (!enabled || !ready) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            List<PostingList> found = new ArrayList<>(hashtagIds.size());
+            for (Integer hashtagId : hashtagIds) {
+                PostingList list = lists.get(hashtagId);
+                if (list != null) {
+                    found.add(list);
+                } else if (matchAll) {
+                    return new ArrayList<>();
+                }
+            }
+            return matchAll
+                    ? PostingList.intersect(found, beforePostId, limit)
+                    : PostingList.union(found, beforePostId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long byteSize() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (PostingList list : lists.values()) {
+                bytes += list.byteSize();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void add(Map<Integer, PostingList> lists, long postId, List<Integer> hashtagIds) {
+        for (Integer hashtagId : hashtagIds) {
+            lists.computeIfAbsent(hashtagId, id -> new PostingList()).add(postId);
+        }
+    }
+
+    /**
+     * Rebuilds the posting lists from post_hashtag.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Map<Integer, PostingList> built = new HashMap<>();
+            // Ordered by post so every list is built by appends.
+            jdbcTemplate.query("SELECT post_id, hashtag_id FROM post_hashtag ORDER BY post_id", rs -> {
+                built.computeIfAbsent(rs.getInt("hashtag_id"), id -> new PostingList()).add(rs.getLong("post_id"));
+            });
+
+            synchronized (this) {
+                // Posts the query already saw are skipped by PostingList.add.
+                for (Object[] post : pendingPosts) {
+                    @SuppressWarnings("unchecked")
+                    List<Integer> hashtagIds = (List<Integer>) post[1];
+                    add(built, (Long) post[0], hashtagIds);
+                }
+                lock.writeLock().lock();
+                try {
+                    lists = built;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                pendingPosts = null;
+                ready = true;
+            }
+            System.out.println("Hashtag index built in " + (System.currentTimeMillis() - start) + " ms, "
+                    + built.size() + " hashtags");
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Stay on the SQL path; stop buffering posts that will never be replayed.
+            synchronized (this) {
+                pendingPosts = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package uga.menik.csx370.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import uga.menik.csx370.utility.PrefixTopK;
+
+/**
+ * Hashtag autocomplete.
+ *
+ * Suggestions come from a PrefixTopK over every hashtag in the
+ * HashtagDictionary, weighted by uses in the last app.hashtags.suggest.days
+ * days from hashtag_usage_hourly. Lookups only read the current index, which
+ * is rebuilt in the background every app.hashtags.suggest.rebuild-interval-ms
+ * and swapped in whole. Tags first used since the last rebuild are not
+ * suggested until the next one.
+ */
+@Service
+public class HashtagSuggestService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final HashtagDictionary hashtagDictionary;
+
+    private final int topK;
+
+    private final int days;
+
+    private volatile PrefixTopK index = new PrefixTopK(new HashMap<>(), 1);
+
+    @Autowired
+    public HashtagSuggestService(JdbcTemplate jdbcTemplate, HashtagDictionary hashtagDictionary,
+                                 @Value("${app.hashtags.suggest.top-k:10}") int topK,
+                                 @Value("${app.hashtags.suggest.days:7}") int days) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hashtagDictionary = hashtagDictionary;
+        this.topK = topK;
+        this.days = days;
+    }
+
+    /**
+     * Returns up to limit hashtags starting with prefix, most used recently
+     * first. A leading # is ignored. Never queries the database.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        if (prefix == null) {
+            return new ArrayList<>();
+        }
+        String normalized = prefix.trim().toLowerCase();
+        if (normalized.startsWith("#")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return index.top(normalized, Math.min(limit, topK));
+    }
+
+    /**
+     * Rebuilds the index from the dictionary and recent usage.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Integer, Long> uses = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT hashtag_id, SUM(uses) AS uses FROM hashtag_usage_hourly " +
+                "WHERE hour_start >= (CURRENT_TIMESTAMP - INTERVAL ? DAY) GROUP BY hashtag_id",
+                rs -> {
+                    uses.put(rs.getInt("hashtag_id"), rs.getLong("uses"));
+                }, days);
+
+        Map<String, Long> weighted = new HashMap<>();
+        for (Map.Entry<Integer, String> tag : hashtagDictionary.snapshot().entrySet()) {
+            weighted.put(tag.getValue(), uses.getOrDefault(tag.getKey(), 0L));
+        }
+        PrefixTopK built = new PrefixTopK(weighted, topK);
+        index = built;
+        System.out.println("Hashtag suggestions rebuilt in " + (System.currentTimeMillis() - start) + " ms: "
+                + built.size() + " tags, " + built.heavyNodeCount() + " precomputed prefixes");
+    }
+
+    /**
+     * Builds the first index once the dictionary is loaded.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        scheduledRebuild();
+    }
+
+    /**
+     * Periodic rebuild.
+     */
+    @Scheduled(initialDelayString = "${app.hashtags.suggest.rebuild-interval-ms:300000}",
+               fixedDelayString = "${app.hashtags.suggest.rebuild-interval-ms:300000}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package uga.menik.csx370.services;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import uga.menik.csx370.utility.HeavyHitterWindow;
+import uga.menik.csx370.utility.SlidingWindowCounter;
+
+/**
+ * In-memory hashtag usage counts for the trending page.
+ *
+ * Uses are counted per hashtag id in hourly buckets covering the last
+ * app.trending.window-hours hours. createPost feeds every committed post's
+ * hashtags in, and the buckets are rebuilt from post_hashtag at startup:
+ * hour by hour for posts older than app.trending.grace-seconds, and post by
+ * post for the newer ones, whose ids are kept so that a post counted there
+ * is not counted again when createPost reports it. Posts reported during
+ * warm-up that are older than the grace period were committed before the
+ * hourly query and are not counted again either. Top
+ * hashtags for a window of days are then the sum of the last days * 24
+ * buckets followed by a size-k heap selection, with no SQL at all.
+ *
+ * Windows start on an hour boundary, so a window may include up to an hour
+ * less than the SQL query's "now minus N days" cut-off would.
+ *
+ * For vocabularies too large to count exactly, the same events also feed an
+ * approximate HeavyHitterWindow (daily Count-Min Sketch plus Space-Saving
+ * summaries) of fixed size. Its answers carry an error bound of
+ * epsilon * (uses in the window) and count whole calendar days (UTC).
+ */
+@Service
+public class HashtagTrendService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final HashtagDictionary hashtagDictionary;
+
+    private final boolean enabled;
+
+    private final int windowHours;
+
+    private final int graceSeconds;
+
+    private final SlidingWindowCounter counter;
+
+    private final boolean approxEnabled;
+
+    private final HeavyHitterWindow approx;
+
+    // Posts recorded before warm-up finished, replayed if the warm-up query did not include them.
+    // Guarded by this.
+    private List<Object[]> pendingPosts = new ArrayList<>();
+
+    // Posts the warm-up counted one by one; recording them again is a no-op.
+    // Written once before ready is set.
+    private Set<Long> warmedPosts = new HashSet<>();
+
+    private volatile boolean ready = false;
+
+    @Autowired
+    public HashtagTrendService(JdbcTemplate jdbcTemplate, HashtagDictionary hashtagDictionary,
+                               @Value("${app.trending.memory.enabled:true}") boolean enabled,
+                               @Value("${app.trending.window-hours:720}") int windowHours,
+                               @Value("${app.trending.grace-seconds:60}") int graceSeconds,
+                               @Value("${app.trending.approx.enabled:true}") boolean approxEnabled,
+                               @Value("${app.trending.approx.epsilon:0.001}") double epsilon,
+                               @Value("${app.trending.approx.delta:0.01}") double delta,
+                               @Value("${app.trending.approx.capacity:200}") int capacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hashtagDictionary = hashtagDictionary;
+        this.enabled = enabled;
+        this.windowHours = windowHours;
+        this.graceSeconds = graceSeconds;
+        this.counter = enabled ? new SlidingWindowCounter(windowHours) : null;
+        this.approxEnabled = approxEnabled;
+        this.approx = approxEnabled
+                ? new HeavyHitterWindow(Math.max(1, windowHours / 24), epsilon, delta, capacity, 0x5eed)
+                : null;
+    }
+
+    /**
+     * Approximate top hashtags and how far each count may be overstated.
+     */
+    public static final class ApproximateTrends {
+        public final List<TrendingService.TagTrend> trends;
+        public final long errorBound;
+        public final double confidencePercent;
+
+        public ApproximateTrends(List<TrendingService.TagTrend> trends, long errorBound, double confidencePercent) {
+            this.trends = trends;
+            this.errorBound = errorBound;
+            this.confidencePercent = confidencePercent;
+        }
+    }
+
+    /**
+     * Counts one committed post's hashtags.
+     */
+    public void recordPost(long postId, List<Integer> hashtagIds, long createdAt) {
+        if ((!enabled && !approxEnabled) || hashtagIds.isEmpty()) {
+            return;
+        }
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    if (pendingPosts != null) {
+                        pendingPosts.add(new Object[] { postId, hashtagIds, createdAt });
+                    }
+                    return;
+                }
+            }
+        }
+        if (warmedPosts.contains(postId)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Integer hashtagId : hashtagIds) {
+            count(hashtagId, createdAt, now, 1);
+        }
+    }
+
+    private void count(int hashtagId, long time, long now, int uses) {
+        if (enabled) {
+            counter.add(hashtagId, time, now, uses);
+        }
+        if (approxEnabled) {
+            approx.add(hashtagId, time, now, uses);
+        }
+    }
+
+    /**
+     * Returns the top hashtags of the last days days, most used first and ties
+     * by tag, or null when the window is longer than the buckets cover or the
+     * counters are not loaded yet; the caller then asks the database.
+     */
+    public List<TrendingService.TagTrend> getTopHashtags(int days, int limit) {
+        if (!enabled || !ready || days < 1 || (long) days * 24 > counter.getWindowHours()) {
+            return null;
+        }
+        Map<Integer, Long> totals = counter.sum(System.currentTimeMillis(), days * 24);
+
+        // Min-heap of the best limit entries seen so far; its head is the weakest.
+        Comparator<TrendingService.TagTrend> weakestFirst = (a, b) -> a.usageCount != b.usageCount
+                ? Long.compare(a.usageCount, b.usageCount)
+                : b.tag.compareTo(a.tag);
+        PriorityQueue<TrendingService.TagTrend> heap = new PriorityQueue<>(limit + 1, weakestFirst);
+        for (Map.Entry<Integer, Long> entry : totals.entrySet()) {
+            if (heap.size() == limit && entry.getValue() < heap.peek().usageCount) {
+                continue;
+            }
+            String tag = hashtagDictionary.getTag(entry.getKey());
+            if (tag == null) {
+                continue;
+            }
+            heap.add(new TrendingService.TagTrend(tag, entry.getValue()));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        List<TrendingService.TagTrend> out = new ArrayList<>(heap);
+        out.sort(Collections.reverseOrder(weakestFirst));
+        return out;
+    }
+
+    /**
+     * Returns estimated top hashtags of the last days days, or null when the
+     * approximate window does not cover that many days or is not loaded yet.
+     */
+    public ApproximateTrends getApproximateTopHashtags(int days, int limit) {
+        if (!approxEnabled || !ready || days < 1 || days > approx.getWindowDays()) {
+            return null;
+        }
+        HeavyHitterWindow.Result result = approx.top(System.currentTimeMillis(), days, limit);
+        List<TrendingService.TagTrend> trends = new ArrayList<>(result.keys.size());
+        for (int i = 0; i < result.keys.size(); i++) {
+            String tag = hashtagDictionary.getTag(result.keys.get(i));
+            if (tag != null) {
+                trends.add(new TrendingService.TagTrend(tag, result.estimates.get(i)));
+            }
+        }
+        return new ApproximateTrends(trends, result.errorBound, 100 * (1 - approx.getDelta()));
+    }
+
+    /**
+     * Rebuilds the buckets from post_hashtag. Posts older than the grace
+     * period are summed per hashtag and hour; newer ones, which may still be
+     * committing out of id order, are read and remembered one by one so the
+     * replay can skip exactly the posts already counted. The boundary is taken
+     * from the app clock, which is also what createPost stamps created_at with,
+     * so buffered posts fall on the same side of it as in the queries.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!enabled && !approxEnabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Timestamp settled = new Timestamp(System.currentTimeMillis() / 1000 * 1000 - graceSeconds * 1000L);
+            String sql =
+                "SELECT ph.hashtag_id, MIN(p.created_at) AS hour_start, COUNT(*) AS uses " +
+                "FROM post_hashtag ph JOIN post p ON p.post_id = ph.post_id " +
+                "WHERE p.created_at >= (CURRENT_TIMESTAMP - INTERVAL ? HOUR) AND p.created_at < ? " +
+                "GROUP BY ph.hashtag_id, DATE_FORMAT(p.created_at, '%Y-%m-%d %H')";
+            long now = System.currentTimeMillis();
+            jdbcTemplate.query(sql, rs -> {
+                count(rs.getInt("hashtag_id"), rs.getTimestamp("hour_start").getTime(), now,
+                        rs.getInt("uses"));
+            }, windowHours, settled);
+
+            Set<Long> recent = new HashSet<>();
+            jdbcTemplate.query(
+                    "SELECT ph.post_id, ph.hashtag_id, p.created_at " +
+                    "FROM post_hashtag ph JOIN post p ON p.post_id = ph.post_id WHERE p.created_at >= ?",
+                    rs -> {
+                        recent.add(rs.getLong("post_id"));
+                        count(rs.getInt("hashtag_id"), rs.getTimestamp("created_at").getTime(), now, 1);
+                    }, settled);
+
+            synchronized (this) {
+                for (Object[] post : pendingPosts) {
+                    // Older posts were committed before the hourly query, which counted them.
+                    if ((Long) post[2] >= settled.getTime() && !recent.contains((Long) post[0])) {
+                        @SuppressWarnings("unchecked")
+                        List<Integer> hashtagIds = (List<Integer>) post[1];
+                        for (Integer hashtagId : hashtagIds) {
+                            count(hashtagId, (Long) post[2], now, 1);
+                        }
+                    }
+                }
+                warmedPosts = recent;
+                pendingPosts = null;
+                ready = true;
+            }
+            System.out.println("Hashtag trend counters warmed in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Stay on the SQL path; stop buffering posts that will never be replayed.
+            synchronized (this) {
+                pendingPosts = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package uga.menik.csx370.services;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tracks which authors have too many followers to fan out on write.
+ *
+ * In hybrid feed mode, posts by these authors are not pushed onto follower
+ * timelines; FeedService pulls them at read time instead. The set is small and
+ * is recomputed periodically from the follow table.
+ */
+@Service
+public class HighFollowerService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // "push" fans out every post; "hybrid" pulls high-follower authors at read time.
+    @Value("${app.feed.mode:hybrid}")
+    private String feedMode;
+
+    // Authors with at least this many followers are pulled instead of pushed.
+    @Value("${app.feed.high-follower-threshold:10000}")
+    private int threshold;
+
+    // How many recent posts to push into timelines when an author drops below the threshold.
+    @Value("${app.feed.timeline-backfill-limit:1000}")
+    private int timelineBackfillLimit;
+
+    // Replaced wholesale on refresh so readers never see a half-built set.
+    private volatile Set<Integer> highFollowerAuthors = Set.of();
+
+    @Autowired
+    public HighFollowerService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        Gauge.builder("feed.high_follower.threshold", () -> threshold)
+                .description("Follower count at which an author's posts are pulled instead of pushed")
+                .register(meterRegistry);
+        Gauge.builder("feed.high_follower.authors", () -> highFollowerAuthors.size())
+                .description("Authors currently served through the pull path")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns whether the hybrid push/pull feed is enabled.
+     */
+    public boolean isHybrid() {
+        return "hybrid".equalsIgnoreCase(feedMode);
+    }
+
+    /**
+     * Returns whether posts by the given author are pulled at read time
+     * rather than fanned out to follower timelines.
+     */
+    public boolean isPulled(int authorId) {
+        return isHybrid() && highFollowerAuthors.contains(authorId);
+    }
+
+    /**
+     * Returns the current set of pulled authors. The set is immutable.
+     */
+    public Set<Integer> getPulledAuthors() {
+        return isHybrid() ? highFollowerAuthors : Set.of();
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Recomputes the high-follower set. Authors that dropped below the threshold
+     * get their recent posts pushed into follower timelines, because posts they
+     * made while pulled were never fanned out.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.feed.high-follower-refresh-ms:300000}",
+               fixedDelayString = "${app.feed.high-follower-refresh-ms:300000}")
+    public void refresh() {
+        if (!isHybrid()) {
+            return;
+        }
+        try {
+            List<Integer> ids = jdbcTemplate.queryForList(
+                    "SELECT followee_id FROM follow GROUP BY followee_id HAVING COUNT(*) >= ?",
+                    Integer.class, threshold);
+            Set<Integer> fresh = Set.copyOf(ids);
+
+            Set<Integer> dropped = new HashSet<>(highFollowerAuthors);
+            dropped.removeAll(fresh);
+            for (Integer authorId : dropped) {
+                backfillFollowers(authorId);
+            }
+
+            highFollowerAuthors = fresh;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Pushes an author's latest posts onto all of their followers' timelines.
+     */
+    private void backfillFollowers(int authorId) {
+        jdbcTemplate.update(
+                "INSERT IGNORE INTO timeline (user_id, post_id, author_id, created_at) " +
+                "SELECT f.follower_id, p.post_id, p.user_id, p.created_at " +
+                "FROM follow f " +
+                "JOIN (SELECT post_id, user_id, created_at FROM post WHERE user_id = ? " +
+                "      ORDER BY created_at DESC, post_id DESC LIMIT ?) p ON p.user_id = f.followee_id",
+                authorId, timelineBackfillLimit);
+    }
+}
@@ -0,0 +1,93 @@
+package uga.menik.csx370.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps post_stats.hot_score current for the "hot" sort on /trending.
+ *
+ * hot_score = LN(1 + likes + w * comments) + created_at / tau (in seconds).
+ * Ordering by this is the same as ordering by engagement * e^(created_at / tau),
+ * i.e. engagement decaying exponentially with age, but a post's score only
+ * changes when its engagement does: the passing of time lowers every post
+ * equally and does not change the order. So the scorer only rescores rows
+ * whose engaged_at moved since its last run, tracked in rollup_watermark.
+ */
+@Service
+public class HotScoreService {
+
+    static final String HOT_SCORE = "hot_score";
+
+    private static final String RESCORE_SQL =
+        "UPDATE post_stats ps JOIN post p ON p.post_id = ps.post_id " +
+        "SET ps.hot_score = LN(1 + ps.likes_count + ? * ps.comments_count) + UNIX_TIMESTAMP(p.created_at) / ? " +
+        "WHERE ps.engaged_at >= FROM_UNIXTIME(?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Seconds for a post's score to drop by one point, i.e. by a factor e in engagement terms.
+    @Value("${app.hot.tau-seconds:45000}")
+    private double tauSeconds;
+
+    // How much one comment counts relative to one like.
+    @Value("${app.hot.comment-weight:2}")
+    private double commentWeight;
+
+    // Rows engaged this close before the previous run are rescored again, in case they committed late.
+    @Value("${app.rollup.grace-seconds:60}")
+    private int graceSeconds;
+
+    /**
+     * Score of a post with no engagement yet, created at createdAtMillis.
+     */
+    public double initialScore(long createdAtMillis) {
+        return (createdAtMillis / 1000) / tauSeconds;
+    }
+
+    /**
+     * Rescores every post engaged since the last run. Returns the number of rows rescored.
+     */
+    public int rescore() {
+        Integer changed = transactionTemplate.execute(status -> {
+            List<Long> found = jdbcTemplate.queryForList(
+                    "SELECT position FROM rollup_watermark WHERE name = ? FOR UPDATE", Long.class, HOT_SCORE);
+            long from = found.isEmpty() ? 0 : Math.max(0, found.get(0) - graceSeconds);
+            long now = jdbcTemplate.queryForObject("SELECT UNIX_TIMESTAMP(CURRENT_TIMESTAMP)", Long.class);
+
+            int rows = jdbcTemplate.update(RESCORE_SQL, commentWeight, tauSeconds, from);
+            jdbcTemplate.update(
+                    "INSERT INTO rollup_watermark (name, position) VALUES (?, ?) " +
+                    "ON DUPLICATE KEY UPDATE position = VALUES(position)", HOT_SCORE, now);
+            return rows;
+        });
+        return changed == null ? 0 : changed;
+    }
+
+    /**
+     * Periodic scorer.
+     */
+    @Scheduled(initialDelayString = "${app.hot.initial-delay-ms:20000}",
+               fixedDelayString = "${app.hot.interval-ms:60000}")
+    public void scheduledRescore() {
+        try {
+            long start = System.currentTimeMillis();
+            int rows = rescore();
+            if (rows > 0) {
+                System.out.println("Hot scores: " + rows + " posts rescored in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -8,14 +8,26 @@ package uga.menik.csx370.services;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import uga.menik.csx370.models.FollowableUser;
+import uga.menik.csx370.models.FollowableUserPage;
+import uga.menik.csx370.models.SuggestedUser;
+import uga.menik.csx370.utility.KeysetCursor;
 
 /**
  * This service contains people related functions.
@@ -25,78 +37,371 @@ public class PeopleService {
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private HighFollowerService highFollowerService;
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
+    @Autowired
+    private PeopleSuggestService peopleSuggestService;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    // user.last_post_at of users who have never posted.
+    private static final Timestamp NEVER_POSTED = Timestamp.valueOf("1970-01-01 00:00:00");
+
+    // Users per page on /people.
+    @Value("${app.people.page-size:20}")
+    private int peoplePageSize;
+
+    // Max users shown for a people search.
+    @Value("${app.people.search.limit:20}")
+    private int peopleSearchLimit;
+
+    // How many of a followee's latest posts are copied into a new follower's timeline.
+    @Value("${app.feed.timeline-backfill-limit:1000}")
+    private int timelineBackfillLimit;
+
     /**
-     * Returns a list of followable users (excluding the current user),
+     * Returns a page of followable users (excluding the current user), most
+     * recent poster first. cursor is the cursor of the previous page, or null
+     * for the first page.
+     *
+     * The order comes from user.last_post_at, kept by createPost, so a page is
+     * one range scan of idx_user_last_post. Follow status for the whole page
+     * is then read with a single IN lookup.
      */
-    public List<FollowableUser> getFollowableUsers(String userIdToExclude) {
+    public FollowableUserPage getFollowableUsers(String userIdToExclude, String cursor) {
+        KeysetCursor after = KeysetCursor.parse(cursor);
         String sql =
-            "SELECT u.userId, u.firstName, u.lastName, " +
-            "       COALESCE(DATE_FORMAT(MAX(p.created_at), '%b %d, %Y, %h:%i %p'), 'Unknown') AS last_post_time, " +
-            "       CASE WHEN EXISTS ( " +
-            "         SELECT 1 FROM follow f " +
-            "          WHERE f.follower_id = ? AND f.followee_id = u.userId " +
-            "       ) THEN 1 ELSE 0 END AS is_followed " +
+            "SELECT u.userId, u.firstName, u.lastName, u.last_post_at " +
             "FROM user u " +
-            "LEFT JOIN post p ON p.user_id = u.userId " +   
             "WHERE u.userId <> ? " +
-            "GROUP BY u.userId, u.firstName, u.lastName " +
-            "ORDER BY COALESCE(MAX(p.created_at), TIMESTAMP('1970-01-01 00:00:00')) DESC";
+            (after != null ? "AND (u.last_post_at < ? OR (u.last_post_at = ? AND u.userId < ?)) " : "") +
+            "ORDER BY u.last_post_at DESC, u.userId DESC " +
+            "LIMIT ?";
 
         List<FollowableUser> users = new ArrayList<>();
+        String nextCursor = null;
 
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             int me = Integer.parseInt(userIdToExclude);
-            stmt.setInt(1, me);
-            stmt.setInt(2, me);
+            int i = 1;
+            stmt.setInt(i++, me);
+            if (after != null) {
+                Timestamp lastPostAt = new Timestamp(after.getSortKey());
+                stmt.setTimestamp(i++, lastPostAt);
+                stmt.setTimestamp(i++, lastPostAt);
+                stmt.setLong(i++, after.getId());
+            }
+            // One extra row tells whether there is a next page.
+            stmt.setInt(i++, peoplePageSize + 1);
 
+            List<Integer> ids = new ArrayList<>();
+            List<String[]> names = new ArrayList<>();
+            List<Timestamp> lastPosts = new ArrayList<>();
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    String id = String.valueOf(rs.getInt("userId"));
-                    String firstName = rs.getString("firstName");
-                    String lastName = rs.getString("lastName");
-                    String lastActive = rs.getString("last_post_time");
-                    boolean isFollowed = rs.getInt("is_followed") == 1;
-
-                    users.add(new FollowableUser(id, firstName, lastName, isFollowed, lastActive));
+                    ids.add(rs.getInt("userId"));
+                    names.add(new String[] { rs.getString("firstName"), rs.getString("lastName") });
+                    lastPosts.add(rs.getTimestamp("last_post_at"));
                 }
             }
+            if (ids.size() > peoplePageSize) {
+                ids = ids.subList(0, peoplePageSize);
+                nextCursor = new KeysetCursor(lastPosts.get(peoplePageSize - 1).getTime(),
+                        ids.get(peoplePageSize - 1)).toString();
+            }
+
+            Set<Integer> followed = findFollowed(conn, me, ids);
+            SimpleDateFormat format = new SimpleDateFormat("MMM dd, yyyy, hh:mm a");
+            for (int j = 0; j < ids.size(); j++) {
+                users.add(new FollowableUser(String.valueOf(ids.get(j)), names.get(j)[0], names.get(j)[1],
+                        followed.contains(ids.get(j)), lastActive(lastPosts.get(j), format)));
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return new FollowableUserPage(users, nextCursor);
+    }
+
+    /**
+     * Returns the "people you may know" suggestions for a user, best first.
+     * The ranking comes from PeopleSuggestService; users followed since it was
+     * computed are dropped, and names are read for the rest in one query.
+     */
+    public List<SuggestedUser> getSuggestedUsers(String userId) {
+        List<SuggestedUser> users = new ArrayList<>();
+        int me = Integer.parseInt(userId);
+        List<PeopleSuggestService.Suggestion> shown = new ArrayList<>();
+        for (PeopleSuggestService.Suggestion suggestion : peopleSuggestService.getSuggestions(me)) {
+            if (shown.size() == peopleSuggestService.getLimit()) {
+                break;
+            }
+            if (!followGraphService.isFollowing(me, suggestion.userId)) {
+                shown.add(suggestion);
+            }
+        }
+        if (shown.isEmpty()) {
+            return users;
+        }
 
+        List<Integer> ids = new ArrayList<>();
+        for (PeopleSuggestService.Suggestion suggestion : shown) {
+            ids.add(suggestion.userId);
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            Map<Integer, Object[]> rows = loadUsers(conn, ids);
+            SimpleDateFormat format = new SimpleDateFormat("MMM dd, yyyy, hh:mm a");
+            for (PeopleSuggestService.Suggestion suggestion : shown) {
+                Object[] row = rows.get(suggestion.userId);
+                if (row != null) {
+                    users.add(new SuggestedUser(String.valueOf(suggestion.userId), (String) row[0], (String) row[1],
+                            lastActive((Timestamp) row[2], format), suggestion.mutualCount));
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        return users;
+    }
 
+    /**
+     * Returns the users whose username or names match query (see
+     * UserSearchService), best match first, excluding the current user.
+     */
+    public List<FollowableUser> searchUsers(String userIdToExclude, String query) {
+        List<FollowableUser> users = new ArrayList<>();
+        int me = Integer.parseInt(userIdToExclude);
+        List<Integer> ids = new ArrayList<>();
+        for (Integer userId : userSearchService.search(query, peopleSearchLimit + 1)) {
+            if (userId != me && ids.size() < peopleSearchLimit) {
+                ids.add(userId);
+            }
+        }
+        if (ids.isEmpty()) {
+            return users;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            Map<Integer, Object[]> rows = loadUsers(conn, ids);
+            Set<Integer> followed = findFollowed(conn, me, ids);
+            SimpleDateFormat format = new SimpleDateFormat("MMM dd, yyyy, hh:mm a");
+            for (Integer userId : ids) {
+                Object[] row = rows.get(userId);
+                if (row != null) {
+                    users.add(new FollowableUser(String.valueOf(userId), (String) row[0], (String) row[1],
+                            followed.contains(userId), lastActive((Timestamp) row[2], format)));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
         return users;
     }
 
+    /**
+     * Reads first name, last name and last_post_at of userIds in one query, keyed by userId.
+     */
+    private Map<Integer, Object[]> loadUsers(Connection conn, List<Integer> userIds) throws SQLException {
+        Map<Integer, Object[]> rows = new HashMap<>();
+        String sql = "SELECT userId, firstName, lastName, last_post_at FROM user WHERE userId IN (" +
+                String.join(", ", Collections.nCopies(userIds.size(), "?")) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < userIds.size(); i++) {
+                stmt.setInt(i + 1, userIds.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.put(rs.getInt("userId"), new Object[] {
+                            rs.getString("firstName"), rs.getString("lastName"), rs.getTimestamp("last_post_at") });
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static String lastActive(Timestamp lastPost, SimpleDateFormat format) {
+        return lastPost.getTime() > NEVER_POSTED.getTime() ? format.format(lastPost) : "Unknown";
+    }
+
+    /**
+     * Returns which of userIds the follower follows, from the follow graph
+     * or, until it is loaded, in one query.
+     */
+    private Set<Integer> findFollowed(Connection conn, int followerId, List<Integer> userIds) throws SQLException {
+        Set<Integer> followed = new HashSet<>();
+        if (userIds.isEmpty()) {
+            return followed;
+        }
+        if (followGraphService.isReady()) {
+            for (Integer userId : userIds) {
+                if (followGraphService.isFollowing(followerId, userId)) {
+                    followed.add(userId);
+                }
+            }
+            return followed;
+        }
+        String sql = "SELECT followee_id FROM follow WHERE follower_id = ? AND followee_id IN (" +
+                String.join(", ", Collections.nCopies(userIds.size(), "?")) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, followerId);
+            for (int i = 0; i < userIds.size(); i++) {
+                stmt.setInt(i + 2, userIds.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    followed.add(rs.getInt("followee_id"));
+                }
+            }
+        }
+        return followed;
+    }
+
     /** 
-     * Adds a follow record to the database. 
+     * Adds a follow record to the database, moves both users' user_stats
+     * counters and backfills the follower's timeline with the followee's
+     * most recent posts, in one transaction.
     */
     public void follow(String followerId, String followeeId) {
         String sql = "INSERT IGNORE INTO follow(follower_id, followee_id) VALUES (?, ?)";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, Integer.parseInt(followerId));
-            ps.setInt(2, Integer.parseInt(followeeId));
-            ps.executeUpdate();
+        String backfillSql =
+            "INSERT IGNORE INTO timeline (user_id, post_id, author_id, created_at) " +
+            "SELECT ?, p.post_id, p.user_id, p.created_at FROM post p " +
+            "WHERE p.user_id = ? " +
+            "ORDER BY p.created_at DESC, p.post_id DESC " +
+            "LIMIT ?";
+        int follower;
+        int followee;
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                 PreparedStatement backfill = conn.prepareStatement(backfillSql)) {
+                follower = Integer.parseInt(followerId);
+                followee = Integer.parseInt(followeeId);
+                ps.setInt(1, follower);
+                ps.setInt(2, followee);
+                if (ps.executeUpdate() > 0) {
+                    moveFollowCounts(conn, follower, followee, 1);
+                    // High-follower authors are pulled at read time, so their posts are not copied.
+                    if (!highFollowerService.isPulled(followee)) {
+                        backfill.setInt(1, follower);
+                        backfill.setInt(2, followee);
+                        backfill.setInt(3, timelineBackfillLimit);
+                        backfill.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (Exception e) {
             e.printStackTrace();
+            return;
         }
+        afterFollowChange(follower, followee, true);
     }
 
     /** 
-     * Removes a follow record from the database. 
+     * Removes a follow record from the database, moves both users'
+     * user_stats counters and trims the followee's posts out of the
+     * follower's timeline, in one transaction.
     */
     public void unfollow(String followerId, String followeeId) {
         String sql = "DELETE FROM follow WHERE follower_id = ? AND followee_id = ?";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, Integer.parseInt(followerId));
-            ps.setInt(2, Integer.parseInt(followeeId));
-            ps.executeUpdate();
+        String trimSql = "DELETE FROM timeline WHERE user_id = ? AND author_id = ?";
+        int follower;
+        int followee;
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                 PreparedStatement trim = conn.prepareStatement(trimSql)) {
+                follower = Integer.parseInt(followerId);
+                followee = Integer.parseInt(followeeId);
+                ps.setInt(1, follower);
+                ps.setInt(2, followee);
+                if (ps.executeUpdate() > 0) {
+                    moveFollowCounts(conn, follower, followee, -1);
+                }
+                trim.setInt(1, follower);
+                trim.setInt(2, followee);
+                trim.executeUpdate();
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (Exception e) {
             e.printStackTrace();
+            return;
+        }
+        afterFollowChange(follower, followee, false);
+    }
+
+    /**
+     * Brings the in-memory follow graph and the follower's cached suggestions
+     * in line with a committed follow or unfollow. Runs outside the
+     * transaction: the change is already committed, so a failure here is
+     * logged and left for the graph's periodic rebuild, never rolled back.
+     */
+    private void afterFollowChange(int follower, int followee, boolean following) {
+        try {
+            if (following) {
+                followGraphService.follow(follower, followee);
+            } else {
+                followGraphService.unfollow(follower, followee);
+            }
+        } catch (Exception e) {
+            System.err.println("Follow graph not updated for " + follower + " -> " + followee
+                    + "; the next rebuild will pick it up");
+            e.printStackTrace();
+        }
+        try {
+            peopleSuggestService.invalidate(follower);
+        } catch (Exception e) {
+            System.err.println("Suggestions of " + follower + " not invalidated");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Moves the follower's following_count and the followee's followers_count
+     * by delta. Only called when the follow row actually changed. The two rows
+     * are written in userId order so that two users following each other at
+     * the same time lock them in the same order.
+     */
+    private void moveFollowCounts(Connection conn, int follower, int followee, int delta) throws SQLException {
+        String followingSql =
+            "INSERT INTO user_stats (user_id, following_count) VALUES (?, GREATEST(?, 0)) " +
+            "ON DUPLICATE KEY UPDATE following_count = GREATEST(following_count + ?, 0)";
+        String followersSql =
+            "INSERT INTO user_stats (user_id, followers_count) VALUES (?, GREATEST(?, 0)) " +
+            "ON DUPLICATE KEY UPDATE followers_count = GREATEST(followers_count + ?, 0)";
+        try (PreparedStatement following = conn.prepareStatement(followingSql);
+             PreparedStatement followers = conn.prepareStatement(followersSql)) {
+            following.setInt(1, follower);
+            following.setInt(2, delta);
+            following.setInt(3, delta);
+            followers.setInt(1, followee);
+            followers.setInt(2, delta);
+            followers.setInt(3, delta);
+            if (follower <= followee) {
+                following.executeUpdate();
+                followers.executeUpdate();
+            } else {
+                followers.executeUpdate();
+                following.executeUpdate();
+            }
         }
     }
 }
@@ -0,0 +1,303 @@
+package uga.menik.csx370.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * "People you may know": users followed by many of the people a user follows.
+ *
+ * A candidate's score is the number of the user's followees who follow them,
+ * found by walking two hops of the FollowGraphService graph. The user's
+ * followees are split across a fork-join pool; each task counts the followees
+ * of its slice into a local map and the maps are merged on the way back up.
+ *
+ * Two limits keep the walk within app.people.suggest.budget-ms however many
+ * accounts are involved. A user following more than max-followees accounts
+ * has a random sample of them walked, and a followee following more than
+ * max-fanout accounts contributes a random sample of those, each weighted up
+ * so counts stay unbiased. Tasks still running at the budget stop where they
+ * are, and counts are scaled by the share of followees actually walked.
+ *
+ * Results are cached per user for ttl-seconds and recomputed on the next
+ * request after they expire or after the user follows or unfollows someone.
+ * Until the graph is loaded there are no suggestions.
+ */
+@Service
+public class PeopleSuggestService {
+
+    /**
+     * A suggested user and their (possibly estimated) mutual follow count.
+     */
+    public static class Suggestion {
+        public final int userId;
+        public final int mutualCount;
+
+        public Suggestion(int userId, int mutualCount) {
+            this.userId = userId;
+            this.mutualCount = mutualCount;
+        }
+    }
+
+    // Followees walked by one task without splitting further.
+    private static final int FOLLOWEES_PER_TASK = 32;
+
+    private final FollowGraphService followGraphService;
+
+    private final boolean enabled;
+
+    private final int limit;
+
+    private final int maxFollowees;
+
+    private final int maxFanout;
+
+    private final long budgetNanos;
+
+    private final ForkJoinPool pool;
+
+    private final Cache<Integer, List<Suggestion>> suggestions;
+
+    private final Timer computeTimer;
+
+    private final Counter truncated;
+
+    @Autowired
+    public PeopleSuggestService(FollowGraphService followGraphService, MeterRegistry meterRegistry,
+                                @Value("${app.people.suggest.enabled:true}") boolean enabled,
+                                @Value("${app.people.suggest.limit:5}") int limit,
+                                @Value("${app.people.suggest.max-followees:500}") int maxFollowees,
+                                @Value("${app.people.suggest.max-fanout:1000}") int maxFanout,
+                                @Value("${app.people.suggest.budget-ms:50}") long budgetMs,
+                                @Value("${app.people.suggest.parallelism:4}") int parallelism,
+                                @Value("${app.people.suggest.ttl-seconds:600}") long ttlSeconds,
+                                @Value("${app.people.suggest.max-size:10000}") long maxSize) {
+        this.followGraphService = followGraphService;
+        this.enabled = enabled;
+        this.limit = limit;
+        this.maxFollowees = maxFollowees;
+        this.maxFanout = maxFanout;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        this.pool = new ForkJoinPool(parallelism);
+        this.suggestions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, suggestions, "people.suggestions");
+        this.computeTimer = Timer.builder("people.suggest")
+                .description("Friends-of-friends walks for people suggestions")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.truncated = Counter.builder("people.suggest.truncated")
+                .description("Suggestion walks stopped early by the time budget")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns up to twice app.people.suggest.limit suggestions for userId,
+     * best first, so callers can drop ones that no longer apply. Users
+     * userId follows are left out as of when the list was computed.
+     */
+    public List<Suggestion> getSuggestions(int userId) {
+        if (!enabled || !followGraphService.isReady()) {
+            return new ArrayList<>();
+        }
+        List<Suggestion> cached = suggestions.get(userId, this::compute);
+        return cached != null ? cached : new ArrayList<>();
+    }
+
+    /**
+     * Returns the number of suggestions pages should show.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Drops userId's cached suggestions, e.g. after they follow someone.
+     */
+    public void invalidate(int userId) {
+        suggestions.invalidate(userId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private List<Suggestion> compute(int userId) {
+        long start = System.nanoTime();
+        try {
+            int[] followees = followeesOf(userId);
+            if (followees.length == 0) {
+                return new ArrayList<>();
+            }
+            int[] walked = followees;
+            if (followees.length > maxFollowees) {
+                walked = followees.clone();
+                sampleInPlace(walked, walked.length, maxFollowees);
+                walked = Arrays.copyOf(walked, maxFollowees);
+            }
+            Tally tally = pool.invoke(new TwoHopTask(walked, 0, walked.length, start + budgetNanos));
+            if (tally.walked < walked.length) {
+                truncated.increment();
+            }
+            if (tally.walked == 0) {
+                // Out of time before any followee was walked; not worth caching.
+                return null;
+            }
+
+            // Scale up to what walking every followee would have counted.
+            float scale = (float) followees.length / tally.walked;
+            Arrays.sort(followees);
+            int want = 2 * limit;
+            PriorityQueue<Map.Entry<Integer, Float>> best = new PriorityQueue<>(want + 1,
+                    (a, b) -> !a.getValue().equals(b.getValue())
+                            ? Float.compare(a.getValue(), b.getValue())
+                            : Integer.compare(b.getKey(), a.getKey()));
+            for (Map.Entry<Integer, Float> candidate : tally.scores.entrySet()) {
+                int candidateId = candidate.getKey();
+                if (candidateId == userId || Arrays.binarySearch(followees, candidateId) >= 0) {
+                    continue;
+                }
+                best.add(candidate);
+                if (best.size() > want) {
+                    best.poll();
+                }
+            }
+            Suggestion[] ranked = new Suggestion[best.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                Map.Entry<Integer, Float> entry = best.poll();
+                ranked[i] = new Suggestion(entry.getKey(), Math.max(1, Math.round(entry.getValue() * scale)));
+            }
+            return new ArrayList<>(Arrays.asList(ranked));
+        } finally {
+            computeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private int[] followeesOf(int userId) {
+        int[] buffer = new int[Math.max(0, followGraphService.followeeCount(userId))];
+        int count = followGraphService.copyFollowees(userId, buffer);
+        if (count > buffer.length) {
+            // Followed someone in between; read again with room for them.
+            buffer = new int[count];
+            count = Math.min(followGraphService.copyFollowees(userId, buffer), buffer.length);
+        }
+        return count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Candidate scores of a slice of followees and how many of them were walked.
+     */
+    private static final class Tally {
+        final Map<Integer, Float> scores;
+        final int walked;
+
+        Tally(Map<Integer, Float> scores, int walked) {
+            this.scores = scores;
+            this.walked = walked;
+        }
+    }
+
+    /**
+     * Counts the followees of followees[lo, hi), splitting the range across
+     * the pool until it is small.
+     */
+    private final class TwoHopTask extends RecursiveTask<Tally> {
+        private final int[] followees;
+        private final int lo;
+        private final int hi;
+        private final long deadlineNanos;
+
+        TwoHopTask(int[] followees, int lo, int hi, long deadlineNanos) {
+            this.followees = followees;
+            this.lo = lo;
+            this.hi = hi;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (hi - lo <= FOLLOWEES_PER_TASK) {
+                return walk();
+            }
+            int mid = (lo + hi) >>> 1;
+            TwoHopTask left = new TwoHopTask(followees, lo, mid, deadlineNanos);
+            left.fork();
+            Tally right = new TwoHopTask(followees, mid, hi, deadlineNanos).compute();
+            Tally leftTally = left.join();
+            // Merge the smaller map into the larger one.
+            Map<Integer, Float> into = leftTally.scores.size() >= right.scores.size() ? leftTally.scores : right.scores;
+            Map<Integer, Float> from = into == leftTally.scores ? right.scores : leftTally.scores;
+            for (Map.Entry<Integer, Float> entry : from.entrySet()) {
+                into.merge(entry.getKey(), entry.getValue(), Float::sum);
+            }
+            return new Tally(into, leftTally.walked + right.walked);
+        }
+
+        private Tally walk() {
+            Map<Integer, Float> scores = new HashMap<>();
+            int[] buffer = new int[Math.min(maxFanout, 256)];
+            int walked = 0;
+            for (int i = lo; i < hi; i++) {
+                if (System.nanoTime() > deadlineNanos) {
+                    break;
+                }
+                int count = followGraphService.copyFollowees(followees[i], buffer);
+                if (count > buffer.length) {
+                    buffer = new int[count];
+                    count = Math.min(followGraphService.copyFollowees(followees[i], buffer), buffer.length);
+                }
+                int used = count;
+                float weight = 1f;
+                if (count > maxFanout) {
+                    sampleInPlace(buffer, count, maxFanout);
+                    used = maxFanout;
+                    weight = (float) count / maxFanout;
+                }
+                for (int j = 0; j < used; j++) {
+                    scores.merge(buffer[j], weight, Float::sum);
+                }
+                walked++;
+            }
+            return new Tally(scores, walked);
+        }
+    }
+
+    /**
+     * Moves a uniform random sample of size n of values[0, count) to the
+     * front of values.
+     */
+    private static void sampleInPlace(int[] values, int count, int n) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < n; i++) {
+            int j = i + random.nextInt(count - i);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+}
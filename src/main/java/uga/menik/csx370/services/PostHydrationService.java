@@ -0,0 +1,191 @@
+package uga.menik.csx370.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import uga.menik.csx370.models.Post;
+import uga.menik.csx370.models.User;
+
+/**
+ * Turns lists of post ids into Post objects for a viewer.
+ *
+ * A post's content, date and author never change after it is created, so
+ * they are cached across all users in a bounded Caffeine cache (W-TinyLFU
+ * eviction). Only misses are read from MySQL, with a single
+ * WHERE post_id IN (...) query. Counters change often, so they are read from
+ * post_stats for every request; the viewer's hearted/bookmarked flags come
+ * from their in-memory sets in ViewerFlagsService. Both are overlaid on the
+ * cached part.
+ */
+@Service
+public class PostHydrationService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ViewerFlagsService viewerFlagsService;
+
+    private final ToggleWriteBehindService toggleWriteBehindService;
+
+    private final Cache<Long, PostBody> bodies;
+
+    @Autowired
+    public PostHydrationService(JdbcTemplate jdbcTemplate, ViewerFlagsService viewerFlagsService,
+                                ToggleWriteBehindService toggleWriteBehindService,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.posts.cache-size:50000}") long cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.viewerFlagsService = viewerFlagsService;
+        this.toggleWriteBehindService = toggleWriteBehindService;
+        this.bodies = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, bodies, "post.bodies");
+    }
+
+    /**
+     * The immutable, viewer-independent part of a post.
+     */
+    public static final class PostBody {
+        public final long postId;
+        public final String content;
+        public final long createdAt;
+        public final String postDate;
+        public final User author;
+
+        public PostBody(long postId, String content, long createdAt, String postDate, User author) {
+            this.postId = postId;
+            this.content = content;
+            this.createdAt = createdAt;
+            this.postDate = postDate;
+            this.author = author;
+        }
+    }
+
+    /**
+     * Loads the given posts as seen by viewerId, in the same order as ids.
+     * Ids that do not match a post are skipped.
+     */
+    public List<Post> hydratePosts(List<Long> ids, long viewerId) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, PostBody> found = new HashMap<>(bodies.getAllPresent(ids));
+        if (found.size() < new HashSet<>(ids).size()) {
+            List<Long> misses = new ArrayList<>();
+            for (Long id : ids) {
+                if (!found.containsKey(id)) {
+                    misses.add(id);
+                }
+            }
+            Map<Long, PostBody> loaded = loadBodies(misses);
+            bodies.putAll(loaded);
+            found.putAll(loaded);
+        }
+
+        Map<Long, int[]> counts = loadCounts(found.keySet());
+        ViewerFlagsService.ViewerFlags flags = viewerFlagsService.get(viewerId);
+
+        List<Post> posts = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            PostBody body = found.get(id);
+            if (body == null) {
+                continue;
+            }
+            int[] c = counts.getOrDefault(id, new int[2]);
+            // Likes still queued for write-behind are not in post_stats yet.
+            int hearts = Math.max(0, c[0] + toggleWriteBehindService.pendingLikeDelta(id));
+            posts.add(new Post(String.valueOf(body.postId), body.content, body.postDate, body.author,
+                    hearts, c[1], flags.isLiked(id), flags.isBookmarked(id)));
+        }
+        return posts;
+    }
+
+    /**
+     * Reads post bodies and authors for the given ids with one query.
+     */
+    private Map<Long, PostBody> loadBodies(Collection<Long> ids) {
+        String sql = "SELECT p.post_id, p.content, p.created_at, u.userId, u.firstName, u.lastName " +
+                     "FROM post p JOIN user u ON p.user_id = u.userId " +
+                     "WHERE p.post_id IN (" + placeholders(ids.size()) + ")";
+
+        Map<Long, PostBody> loaded = new HashMap<>();
+        try (Connection conn = jdbcTemplate.getDataSource().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (Long id : ids) {
+                stmt.setLong(i++, id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long postId = rs.getLong("post_id");
+                    Timestamp createdAt = rs.getTimestamp("created_at");
+                    User author = new User(String.valueOf(rs.getInt("userId")),
+                            rs.getString("firstName"), rs.getString("lastName"));
+                    loaded.put(postId, new PostBody(postId, rs.getString("content"),
+                            createdAt == null ? 0L : createdAt.getTime(), formatDate(createdAt), author));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads {hearts, comments} for the given posts from post_stats.
+     */
+    private Map<Long, int[]> loadCounts(Collection<Long> ids) {
+        Map<Long, int[]> counts = new HashMap<>();
+        if (ids.isEmpty()) {
+            return counts;
+        }
+        String sql = "SELECT post_id, likes_count, comments_count FROM post_stats " +
+                     "WHERE post_id IN (" + placeholders(ids.size()) + ")";
+        jdbcTemplate.query(sql, rs -> {
+            counts.put(rs.getLong("post_id"),
+                    new int[] { rs.getInt("likes_count"), rs.getInt("comments_count") });
+        }, ids.toArray());
+        return counts;
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("?");
+        }
+        return sb.toString();
+    }
+
+    private static String formatDate(Timestamp timestamp) {
+        if (timestamp == null) {
+            return "Unknown";
+        }
+        SimpleDateFormat formatter = new SimpleDateFormat("MMM dd, yyyy, hh:mm a", Locale.US);
+        return formatter.format(new Date(timestamp.getTime()));
+    }
+}
@@ -1,22 +1,30 @@
 package uga.menik.csx370.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import uga.menik.csx370.components.PageComposer;
 import uga.menik.csx370.models.Post;
+import uga.menik.csx370.models.PostPage;
 import uga.menik.csx370.models.User;
 import uga.menik.csx370.models.ExpandedPost;
 import uga.menik.csx370.models.Comment;
+import uga.menik.csx370.utility.KeysetCursor;
 import java.sql.Timestamp;
 
 
@@ -26,286 +34,407 @@ public class PostService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private HighFollowerService highFollowerService;
+
+    @Autowired
+    private RecentPostStore recentPostStore;
+
+    @Autowired
+    private PostHydrationService postHydrationService;
+
+    @Autowired
+    private ViewerFlagsService viewerFlagsService;
+
+    @Autowired
+    private ToggleWriteBehindService toggleWriteBehindService;
+
+    @Autowired
+    private HashtagDictionary hashtagDictionary;
+
+    @Autowired
+    private HashtagTrendService hashtagTrendService;
+
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private HotScoreService hotScoreService;
+
+    @Autowired
+    private PageComposer pageComposer;
+
+    @Autowired
+    private HashtagIndexService hashtagIndexService;
+
+    // Posts per page of hashtag search results.
+    @Value("${app.hashtag-search.page-size:20}")
+    private int hashtagPageSize;
+
+    // How much one comment counts relative to one like when sorting hashtag search by engagement.
+    @Value("${app.hashtag-search.comment-weight:2}")
+    private double commentWeight;
+
+    // The engagement sort key is the score times this, floored, so cursors stay integers
+    // while fractional comment weights still tell posts apart.
+    private static final int ENGAGEMENT_SCALE = 1000;
+
+    @Autowired
+    private ContentSearchService contentSearchService;
+
+    // Posts per page of content search results.
+    @Value("${app.search.page-size:20}")
+    private int searchPageSize;
+
+    // Hashtags are # followed by word characters; compiled once and shared (Pattern is thread-safe).
+    private static final Pattern HASHTAG_PATTERN = Pattern.compile("#(\\w+)");
+
+    /**
+     * Creates a post and everything that hangs off it in one transaction:
+     * the post row, the followers' timeline entries, the author's counters
+     * and the hashtag links.
+     * Hashtags cost a fixed three statements however many the post carries:
+     * one multi-row upsert into hashtag, one lookup of their ids and one
+     * batched insert into post_hashtag; tags already in the HashtagDictionary
+     * only need the last one. In-memory stores are only updated after the
+     * transaction has committed.
+     */
     public void createPost(Long userId, String content) {
         if (content == null || content.trim().isEmpty()) {
             throw new IllegalArgumentException("Post content cannot be empty.");
         }
         
         System.out.println("DEBUG: Creating post for user " + userId + " with content: " + content);
-        
-        String insertPostSql = "INSERT INTO post (user_id, content) VALUES (?, ?)";
-        jdbcTemplate.update(insertPostSql, userId, content.trim());
-        System.out.println("DEBUG: Post inserted successfully");
-
-        Long postId = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
-
-        Pattern pattern = Pattern.compile("#(\\w+)");
-        Matcher matcher = pattern.matcher(content);
-        Set<String> hashtags = new HashSet<>();
 
+        // Sorted so concurrent posts lock hashtag rows in the same order.
+        Set<String> hashtags = new TreeSet<>();
+        Matcher matcher = HASHTAG_PATTERN.matcher(content);
         while (matcher.find()) {
-            hashtags.add(matcher.group(1).toLowerCase()); 
+            hashtags.add(matcher.group(1).toLowerCase());
         }
+        
+        // created_at is set here, at the column's one-second precision, so the
+        // in-memory recent post store and the database agree on the value.
+        Timestamp createdAt = new Timestamp(System.currentTimeMillis() / 1000 * 1000);
+
+        Map<String, Integer> newTags = new HashMap<>();
+        List<Integer> hashtagIds = new ArrayList<>();
+        Long postId = transactionTemplate.execute(status -> {
+            // The id comes back from the insert itself, on the same connection.
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(conn -> {
+                PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO post (user_id, content, created_at) VALUES (?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS);
+                stmt.setLong(1, userId);
+                stmt.setString(2, content.trim());
+                stmt.setTimestamp(3, createdAt);
+                return stmt;
+            }, keyHolder);
+            long id = keyHolder.getKey().longValue();
+
+            // Fan out on write: push the new post onto every follower's timeline
+            // with one set-based insert, so reading the feed never joins follow.
+            // High-follower authors are skipped; FeedService pulls their posts at read time.
+            if (!highFollowerService.isPulled(userId.intValue())) {
+                jdbcTemplate.update(
+                        "INSERT INTO timeline (user_id, post_id, author_id, created_at) " +
+                        "SELECT f.follower_id, p.post_id, p.user_id, p.created_at " +
+                        "FROM post p JOIN follow f ON f.followee_id = p.user_id " +
+                        "WHERE p.post_id = ?",
+                        id
+                );
+            }
 
-        for (String tag : hashtags) {
-            jdbcTemplate.update("INSERT IGNORE INTO hashtag (tag) VALUES (?)", tag);
+            // Keep the author's latest post time on the user row for the people page.
+            jdbcTemplate.update("UPDATE user SET last_post_at = GREATEST(last_post_at, ?) WHERE userId = ?",
+                    createdAt, userId);
 
+            // Count the post in the author's profile stats.
             jdbcTemplate.update(
-                    "INSERT INTO post_hashtag (post_id, hashtag_id) " +
-                    "SELECT ?, hashtag_id FROM hashtag WHERE tag = ?",
-                    postId, tag
-            );
+                    "INSERT INTO user_stats (user_id, posts_count) VALUES (?, 1) " +
+                    "ON DUPLICATE KEY UPDATE posts_count = posts_count + 1", userId);
+
+            // Start the post in the hot ranking at its creation-time score (no engagement yet).
+            jdbcTemplate.update("INSERT INTO post_stats (post_id, hot_score) VALUES (?, ?)",
+                    id, hotScoreService.initialScore(createdAt.getTime()));
+
+            hashtagIds.addAll(linkHashtags(id, hashtags, newTags));
+            return id;
+        });
+        System.out.println("DEBUG: Post inserted successfully");
+
+        for (Map.Entry<String, Integer> tag : newTags.entrySet()) {
+            hashtagDictionary.register(tag.getValue(), tag.getKey());
         }
+
+        recentPostStore.append(userId.intValue(), postId, createdAt.getTime());
+        hashtagTrendService.recordPost(postId, hashtagIds, createdAt.getTime());
+        hashtagIndexService.addPost(postId, hashtagIds);
+        contentSearchService.addPost(postId, content);
     }
 
-    
-    public List<Post> getPostsFromFollowing(Long userId) {
-    String sql = "SELECT p.post_id, p.content, p.created_at, " +
-                 "u.userId, u.firstName, u.lastName, " +
-                 "COALESCE(like_count.likes, 0) AS hearts_count, " +
-                 "COALESCE(comment_count.comments, 0) AS comments_count, " +
-                 "CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_hearted, " +
-                 "CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_bookmarked " +
-                 "FROM post p " +
-                 "JOIN follow f ON p.user_id = f.followee_id " +
-                 "JOIN user u ON p.user_id = u.userId " +  
-                 "LEFT JOIN (SELECT post_id, COUNT(*) AS likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id " +
-                 "LEFT JOIN (SELECT post_id, COUNT(*) AS comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id " +
-                 "LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id " +
-                 "LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id " +
-                 "WHERE f.follower_id = ? " +
-                 "ORDER BY p.created_at DESC";
-    return executePostQuery(sql, userId, userId, userId);
-}
+    /**
+     * Makes sure every tag exists in hashtag and links them all to the post.
+     * Tags already in the dictionary skip the hashtag table; the rest are
+     * upserted and looked up together and put into resolved, so the caller
+     * can add them to the dictionary after commit. Returns all the post's
+     * hashtag ids.
+     */
+    private List<Integer> linkHashtags(long postId, Set<String> tags, Map<String, Integer> resolved) {
+        List<Integer> hashtagIds = new ArrayList<>(tags.size());
+        if (tags.isEmpty()) {
+            return hashtagIds;
+        }
+        List<String> unknown = new ArrayList<>();
+        for (String tag : tags) {
+            Integer id = hashtagDictionary.peekId(tag);
+            if (id != null) {
+                hashtagIds.add(id);
+            } else {
+                unknown.add(tag);
+            }
+        }
 
+        if (!unknown.isEmpty()) {
+            String in = String.join(", ", Collections.nCopies(unknown.size(), "?"));
+            String values = String.join(", ", Collections.nCopies(unknown.size(), "(?)"));
 
-    
-    public List<Post> getPostsByUser(Long userId, Long currentUserId) {
-        String sql = "SELECT p.post_id, p.content, p.created_at, " +
-                    "u.userId, u.firstName, u.lastName, " +
-                    "COALESCE(like_count.likes, 0) as hearts_count, " +
-                    "COALESCE(comment_count.comments, 0) as comments_count, " +
-                    "CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END as is_hearted, " +
-                    "CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END as is_bookmarked " +
-                    "FROM post p " +
-                    "JOIN user u ON p.user_id = u.userId " +
-                    "LEFT JOIN (SELECT post_id, COUNT(*) as likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id " +
-                    "LEFT JOIN (SELECT post_id, COUNT(*) as comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id " +
-                    "LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id " +
-                    "LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id " +
-                    "WHERE p.user_id = ? " +
-                    "ORDER BY p.created_at DESC";
-
-        return executePostQuery(sql, currentUserId, currentUserId, userId);
-    }
+            jdbcTemplate.update("INSERT IGNORE INTO hashtag (tag) VALUES " + values, unknown.toArray());
 
-   
-    public List<Post> getBookmarkedPosts(Long userId) {
-        String sql = "SELECT p.post_id, p.content, p.created_at, " +
-                    "u.userId, u.firstName, u.lastName, " +
-                    "COALESCE(like_count.likes, 0) as hearts_count, " +
-                    "COALESCE(comment_count.comments, 0) as comments_count, " +
-                    "CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END as is_hearted, " +
-                    "CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END as is_bookmarked " +
-                    "FROM post p " +
-                    "JOIN user u ON p.user_id = u.userId " +
-                    "JOIN bookmark b ON p.post_id = b.post_id " +
-                    "LEFT JOIN (SELECT post_id, COUNT(*) as likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id " +
-                    "LEFT JOIN (SELECT post_id, COUNT(*) as comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id " +
-                    "LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id " +
-                    "LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id " +
-                    "WHERE b.user_id = ? " +
-                    "ORDER BY p.created_at DESC";
-
-        return executePostQuery(sql, userId, userId, userId);
-    }
+            jdbcTemplate.query("SELECT hashtag_id, tag FROM hashtag WHERE tag IN (" + in + ")", rs -> {
+                hashtagIds.add(rs.getInt("hashtag_id"));
+                resolved.put(rs.getString("tag"), rs.getInt("hashtag_id"));
+            }, unknown.toArray());
+        }
 
-  
-    public List<Post> getPostsByHashtags(List<String> hashtags, Long currentUserId) {
-    if (hashtags == null || hashtags.isEmpty()) {
-        return new ArrayList<>();
+        List<Object[]> links = new ArrayList<>(hashtagIds.size());
+        for (Integer hashtagId : hashtagIds) {
+            links.add(new Object[] { postId, hashtagId });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO post_hashtag (post_id, hashtag_id) VALUES (?, ?)", links);
+        return hashtagIds;
     }
 
-    StringBuilder sql = new StringBuilder();
-    sql.append("SELECT p.post_id, p.content, p.created_at, ");
-    sql.append("u.userId, u.firstName, u.lastName, ");
-    sql.append("COALESCE(like_count.likes, 0) AS hearts_count, ");
-    sql.append("COALESCE(comment_count.comments, 0) AS comments_count, ");
-    sql.append("CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_hearted, ");
-    sql.append("CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END AS is_bookmarked ");
-    sql.append("FROM post p ");
-    sql.append("JOIN user u ON p.user_id = u.userId ");
-    sql.append("JOIN post_hashtag ph ON p.post_id = ph.post_id ");
-    sql.append("JOIN hashtag h ON ph.hashtag_id = h.hashtag_id ");
-    sql.append("LEFT JOIN (SELECT post_id, COUNT(*) AS likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id ");
-    sql.append("LEFT JOIN (SELECT post_id, COUNT(*) AS comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id ");
-    sql.append("LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id ");
-    sql.append("LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id ");
-    sql.append("WHERE h.tag IN (");
-    for (int i = 0; i < hashtags.size(); i++) {
-        if (i > 0) sql.append(", ");
-        sql.append("?");
+    
+    /**
+     * Returns posts by userId, newest first, as seen by currentUserId.
+     */
+    public List<Post> getPostsByUser(Long userId, Long currentUserId) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT post_id FROM post WHERE user_id = ? ORDER BY created_at DESC, post_id DESC",
+                Long.class, userId);
+        return postHydrationService.hydratePosts(ids, currentUserId);
     }
-        sql.append(") ");
-        sql.append("GROUP BY p.post_id, p.content, p.created_at, u.userId, u.firstName, u.lastName ");
-        sql.append("ORDER BY p.created_at DESC");
 
-    
-        return executePostQueryWithHashtags(
-        sql.toString(),
-        hashtags,          
-        currentUserId,           
-        currentUserId         
-    );
-}
+    /**
+     * Returns posts bookmarked by userId, newest post first.
+     */
+    public List<Post> getBookmarkedPosts(Long userId) {
+        if (toggleWriteBehindService.isEnabled()) {
+            // This page reads the bookmark table, so write any queued bookmarks first.
+            toggleWriteBehindService.flush();
+        }
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT p.post_id FROM bookmark b JOIN post p ON p.post_id = b.post_id " +
+                "WHERE b.user_id = ? ORDER BY p.created_at DESC, p.post_id DESC",
+                Long.class, userId);
+        return postHydrationService.hydratePosts(ids, userId);
+    }
 
-   
-    private List<Post> executePostQuery(String sql, Object... params) {
-        List<Post> posts = new ArrayList<>();
-        
-        try (Connection conn = jdbcTemplate.getDataSource().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i]);
-            }
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    String postId = String.valueOf(rs.getLong("post_id"));
-                    String content = rs.getString("content");
-                    String postDate = formatDate(rs.getTimestamp("created_at"));
-                    
-                    String userId = String.valueOf(rs.getInt("userId"));
-                    String firstName = rs.getString("firstName");
-                    String lastName = rs.getString("lastName");
-                    User user = new User(userId, firstName, lastName);
-                    
-                    int heartsCount = rs.getInt("hearts_count");
-                    int commentsCount = rs.getInt("comments_count");
-                    boolean isHearted = rs.getInt("is_hearted") == 1;
-                    boolean isBookmarked = rs.getInt("is_bookmarked") == 1;
-                    
-                    posts.add(new Post(postId, content, postDate, user, heartsCount, commentsCount, isHearted, isBookmarked));
+    /**
+     * Orders for hashtag search results. Ties always go to the newer post.
+     */
+    public enum HashtagSort {
+        /** Newest first. */
+        RECENT,
+        /** Most likes plus weighted comments first. */
+        ENGAGEMENT,
+        /** Most of the searched hashtags first. */
+        RELEVANCE;
+
+        /**
+         * Parses a sort URL parameter. Missing or unknown values mean RECENT.
+         */
+        public static HashtagSort parse(String value) {
+            if (value != null) {
+                for (HashtagSort sort : values()) {
+                    if (sort.name().equalsIgnoreCase(value)) {
+                        return sort;
+                    }
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return RECENT;
         }
-        
-        return posts;
     }
 
     /**
-     * Helper method to execute post queries with hashtags.
+     * Returns a page of posts carrying any (or, if matchAll, all) of the given
+     * hashtags, in the given order. cursor is the cursor of the previous page,
+     * or null for the first page. Tags are resolved to ids through the
+     * HashtagDictionary. Newest-first pages come from the HashtagIndexService;
+     * the other orders, and newest first until the index is built, are ranked
+     * and cut to one page by the database. Only the page of ids is loaded.
      */
-    private List<Post> executePostQueryWithHashtags(String sql, List<String> hashtags, Object... params) {
-        List<Post> posts = new ArrayList<>();
-        
-        try (Connection conn = jdbcTemplate.getDataSource().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            int paramIndex = 1;
-            
-            System.out.println("SQL: " + sql);
-            System.out.println("Hashtags: " + hashtags);
-            System.out.println("Params: " + java.util.Arrays.toString(params));
-            
-            // First set the non-hashtag parameters
-            for (Object param : params) {
-                if (!(param instanceof List)) {
-                    System.out.println("Setting param " + paramIndex + " = " + param);
-                    stmt.setObject(paramIndex++, param);
-                }
-            }
-            
-            // Now set the hashtag parameters
-            for (String hashtag : hashtags) {
-                System.out.println("Setting hashtag param " + paramIndex + " = " + hashtag);
-                stmt.setString(paramIndex++, hashtag);
-            }
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    String postId = String.valueOf(rs.getLong("post_id"));
-                    String content = rs.getString("content");
-                    String postDate = formatDate(rs.getTimestamp("created_at"));
-                    
-                    String userId = String.valueOf(rs.getInt("userId"));
-                    String firstName = rs.getString("firstName");
-                    String lastName = rs.getString("lastName");
-                    User user = new User(userId, firstName, lastName);
-                    
-                    int heartsCount = rs.getInt("hearts_count");
-                    int commentsCount = rs.getInt("comments_count");
-                    boolean isHearted = rs.getInt("is_hearted") == 1;
-                    boolean isBookmarked = rs.getInt("is_bookmarked") == 1;
-                    
-                    posts.add(new Post(postId, content, postDate, user, heartsCount, commentsCount, isHearted, isBookmarked));
+    public PostPage getPostsByHashtags(List<String> hashtags, boolean matchAll, HashtagSort sort,
+                                       Long currentUserId, String cursor) {
+        if (hashtags == null || hashtags.isEmpty()) {
+            return new PostPage(new ArrayList<>(), null);
+        }
+        Map<String, Integer> resolved = hashtagDictionary.getIds(hashtags);
+        Collection<Integer> hashtagIds = new HashSet<>(resolved.values());
+        if (hashtagIds.isEmpty() || (matchAll && resolved.size() < new HashSet<>(hashtags).size())) {
+            // A tag that has never been used matches nothing.
+            return new PostPage(new ArrayList<>(), null);
+        }
+        KeysetCursor after = KeysetCursor.parse(cursor);
+
+        // {sort key, post id} per post. One extra row tells whether there is a next page.
+        List<long[]> rows = null;
+        if (sort == HashtagSort.RECENT) {
+            List<Long> found = hashtagIndexService.search(hashtagIds, matchAll,
+                    after == null ? Long.MAX_VALUE : after.getId(), hashtagPageSize + 1);
+            if (found != null) {
+                rows = new ArrayList<>(found.size());
+                for (Long postId : found) {
+                    rows.add(new long[] { postId, postId });
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        
-        return posts;
+        if (rows == null) {
+            rows = findRankedPostIds(hashtagIds, matchAll, sort, after, hashtagPageSize + 1);
+        }
+
+        String nextCursor = null;
+        if (rows.size() > hashtagPageSize) {
+            rows = rows.subList(0, hashtagPageSize);
+            long[] last = rows.get(rows.size() - 1);
+            nextCursor = new KeysetCursor(last[0], last[1]).toString();
+        }
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (long[] row : rows) {
+            ids.add(row[1]);
+        }
+        return new PostPage(postHydrationService.hydratePosts(ids, currentUserId), nextCursor);
     }
 
-    
-   
-    public ExpandedPost getPostWithComments(Long postId, Long currentUserId) {
-        // First get the post details
-        String postSql = "SELECT p.post_id, p.content, p.created_at, " +
-                        "u.userId, u.firstName, u.lastName, " +
-                        "COALESCE(like_count.likes, 0) as hearts_count, " +
-                        "COALESCE(comment_count.comments, 0) as comments_count, " +
-                        "CASE WHEN user_like.user_id IS NOT NULL THEN 1 ELSE 0 END as is_hearted, " +
-                        "CASE WHEN user_bookmark.user_id IS NOT NULL THEN 1 ELSE 0 END as is_bookmarked " +
-                        "FROM post p " +
-                        "JOIN user u ON p.user_id = u.userId " +
-                        "LEFT JOIN (SELECT post_id, COUNT(*) as likes FROM `like` GROUP BY post_id) like_count ON p.post_id = like_count.post_id " +
-                        "LEFT JOIN (SELECT post_id, COUNT(*) as comments FROM comment GROUP BY post_id) comment_count ON p.post_id = comment_count.post_id " +
-                        "LEFT JOIN (SELECT post_id, user_id FROM `like` WHERE user_id = ?) user_like ON p.post_id = user_like.post_id " +
-                        "LEFT JOIN (SELECT post_id, user_id FROM bookmark WHERE user_id = ?) user_bookmark ON p.post_id = user_bookmark.post_id " +
-                        "WHERE p.post_id = ?";
-
-        Post post = null;
-        try (Connection conn = jdbcTemplate.getDataSource().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(postSql)) {
-            
-            stmt.setLong(1, currentUserId);
-            stmt.setLong(2, currentUserId);
-            stmt.setLong(3, postId);
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    String postIdStr = String.valueOf(rs.getLong("post_id"));
-                    String content = rs.getString("content");
-                    String postDate = formatDate(rs.getTimestamp("created_at"));
-                    
-                    String userId = String.valueOf(rs.getInt("userId"));
-                    String firstName = rs.getString("firstName");
-                    String lastName = rs.getString("lastName");
-                    User user = new User(userId, firstName, lastName);
-                    
-                    int heartsCount = rs.getInt("hearts_count");
-                    int commentsCount = rs.getInt("comments_count");
-                    boolean isHearted = rs.getInt("is_hearted") == 1;
-                    boolean isBookmarked = rs.getInt("is_bookmarked") == 1;
-                    
-                    post = new Post(postIdStr, content, postDate, user, heartsCount, commentsCount, isHearted, isBookmarked);
-                }
+    /**
+     * Returns one page of posts whose text best matches query, best match
+     * first. cursor is the number of the page to show, starting at 1; the
+     * returned page's cursor is the number of the page after it.
+     */
+    public PostPage searchPosts(String query, Long currentUserId, String cursor) {
+        if (query == null || query.isBlank()) {
+            return new PostPage(new ArrayList<>(), null);
+        }
+        int page = 1;
+        if (cursor != null) {
+            try {
+                page = Math.max(1, Integer.parseInt(cursor));
+            } catch (NumberFormatException e) {
+                // Malformed cursors start from the first page.
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return null;
         }
 
-        if (post == null) {
+        // One extra id tells whether there is a next page.
+        List<Long> ids = contentSearchService.search(query.trim(), (page - 1) * searchPageSize, searchPageSize + 1);
+        String nextCursor = null;
+        if (ids.size() > searchPageSize) {
+            ids = ids.subList(0, searchPageSize);
+            nextCursor = String.valueOf(page + 1);
+        }
+        return new PostPage(postHydrationService.hydratePosts(ids, currentUserId), nextCursor);
+    }
+
+    /**
+     * Ranks the posts carrying the hashtags and returns the page after the
+     * cursor as {sort key, post id} rows. Newest first seeks on post_id
+     * before grouping; the other orders seek on their computed key in HAVING.
+     */
+    private List<long[]> findRankedPostIds(Collection<Integer> hashtagIds, boolean matchAll, HashtagSort sort,
+                                           KeysetCursor after, int limit) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ph.post_id, ");
+        switch (sort) {
+            case ENGAGEMENT:
+                sql.append("FLOOR(? * (COALESCE(MAX(ps.likes_count), 0) + ? * COALESCE(MAX(ps.comments_count), 0)))");
+                params.add(ENGAGEMENT_SCALE);
+                params.add(commentWeight);
+                break;
+            case RELEVANCE:
+                sql.append("COUNT(*)");
+                break;
+            default:
+                sql.append("ph.post_id");
+        }
+        sql.append(" AS sort_key FROM post_hashtag ph ");
+        if (sort == HashtagSort.ENGAGEMENT) {
+            sql.append("LEFT JOIN post_stats ps ON ps.post_id = ph.post_id ");
+        }
+        sql.append("WHERE ph.hashtag_id IN (");
+        sql.append(String.join(", ", Collections.nCopies(hashtagIds.size(), "?")));
+        sql.append(") ");
+        params.addAll(hashtagIds);
+        if (sort == HashtagSort.RECENT && after != null) {
+            sql.append("AND ph.post_id < ? ");
+            params.add(after.getId());
+        }
+        sql.append("GROUP BY ph.post_id ");
+
+        List<String> having = new ArrayList<>();
+        if (matchAll) {
+            having.add("COUNT(*) = ?");
+            params.add(hashtagIds.size());
+        }
+        if (sort != HashtagSort.RECENT && after != null) {
+            having.add("(sort_key < ? OR (sort_key = ? AND ph.post_id < ?))");
+            params.add(after.getSortKey());
+            params.add(after.getSortKey());
+            params.add(after.getId());
+        }
+        if (!having.isEmpty()) {
+            sql.append("HAVING ").append(String.join(" AND ", having)).append(" ");
+        }
+        sql.append("ORDER BY sort_key DESC, ph.post_id DESC LIMIT ?");
+        params.add(limit);
+
+        return jdbcTemplate.query(sql.toString(),
+                (rs, rowNum) -> new long[] { rs.getLong("sort_key"), rs.getLong("post_id") },
+                params.toArray());
+    }
+
+    /**
+     * Returns a single post with its comments, oldest comment first,
+     * or null if the post does not exist. The post and its comments are
+     * loaded concurrently. Throws if the post could not be loaded by the
+     * page deadline; missing comments only leave the list empty.
+     */
+    public ExpandedPost getPostWithComments(Long postId, Long currentUserId) {
+        PageComposer.Composition page = pageComposer.begin("post");
+        PageComposer.Call<List<Post>> postCall =
+                page.fork("post", () -> postHydrationService.hydratePosts(List.of(postId), currentUserId));
+        PageComposer.Call<List<Comment>> commentsCall = page.fork("comments", () -> getComments(postId));
+
+        // No fallback: an empty list here would read as "post does not exist".
+        List<Post> found = page.join(postCall);
+        if (found.isEmpty()) {
             return null;
         }
+        Post post = found.get(0);
+        List<Comment> comments = page.join(commentsCall, new ArrayList<>());
 
-        // Now get the comments for the post
+        return new ExpandedPost(post.getPostId(), post.getContent(), post.getPostDate(), 
+                               post.getUser(), post.getHeartsCount(), post.getCommentsCount(), 
+                               post.getHearted(), post.isBookmarked(), comments);
+    }
+
+    /**
+     * Returns the comments on a post, oldest first.
+     */
+    private List<Comment> getComments(Long postId) {
         String commentsSql = "SELECT c.comment_id, c.content, c.created_at, " +
                            "u.userId, u.firstName, u.lastName " +
                            "FROM comment c " +
@@ -337,34 +466,79 @@ public class PostService {
             e.printStackTrace();
         }
 
-        return new ExpandedPost(post.getPostId(), post.getContent(), post.getPostDate(), 
-                               post.getUser(), post.getHeartsCount(), post.getCommentsCount(), 
-                               post.getHearted(), post.isBookmarked(), comments);
+        return comments;
     }
 
     
+    /**
+     * Adds or removes a like. The post_stats counter and the author's
+     * user_stats likes_received move in the same transaction and only when
+     * the like row actually changed, so repeated
+     * toggles in the same direction leave the counter alone. The viewer's
+     * in-memory liked set is updated once the transaction has committed.
+     * In write-behind mode the toggle is queued instead (see ToggleWriteBehindService).
+     */
     public void toggleLike(Long userId, Long postId, boolean isAdd) {
-        if (isAdd) {
-            String sql = "INSERT IGNORE INTO `like` (user_id, post_id) VALUES (?, ?)";
-            jdbcTemplate.update(sql, userId, postId);
-        } else {
-            String sql = "DELETE FROM `like` WHERE user_id = ? AND post_id = ?";
-            jdbcTemplate.update(sql, userId, postId);
+        if (toggleWriteBehindService.isEnabled()) {
+            toggleWriteBehindService.enqueueLike(userId, postId, isAdd);
+            return;
         }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (isAdd) {
+                String sql = "INSERT IGNORE INTO `like` (user_id, post_id) VALUES (?, ?)";
+                if (jdbcTemplate.update(sql, userId, postId) > 0) {
+                    jdbcTemplate.update(
+                        "INSERT INTO post_stats (post_id, likes_count) VALUES (?, 1) " +
+                        "ON DUPLICATE KEY UPDATE likes_count = likes_count + 1, engaged_at = CURRENT_TIMESTAMP", postId);
+                    jdbcTemplate.update(
+                        "INSERT INTO user_stats (user_id, likes_received) SELECT user_id, 1 FROM post WHERE post_id = ? " +
+                        "ON DUPLICATE KEY UPDATE likes_received = likes_received + 1", postId);
+                }
+            } else {
+                rollupService.decrementLikeRollup(userId, postId);
+                String sql = "DELETE FROM `like` WHERE user_id = ? AND post_id = ?";
+                if (jdbcTemplate.update(sql, userId, postId) > 0) {
+                    jdbcTemplate.update(
+                        "UPDATE post_stats SET likes_count = likes_count - 1, engaged_at = CURRENT_TIMESTAMP " +
+                        "WHERE post_id = ? AND likes_count > 0", postId);
+                    jdbcTemplate.update(
+                        "UPDATE user_stats s JOIN post p ON p.user_id = s.user_id " +
+                        "SET s.likes_received = s.likes_received - 1 " +
+                        "WHERE p.post_id = ? AND s.likes_received > 0", postId);
+                }
+            }
+        });
+        viewerFlagsService.setLiked(userId, postId, isAdd);
     }
 
-   
+    /**
+     * Adds or removes a bookmark, keeping post_stats in step like toggleLike.
+     */
     public void toggleBookmark(Long userId, Long postId, boolean isAdd) {
-        if (isAdd) {
-            String sql = "INSERT IGNORE INTO bookmark (user_id, post_id) VALUES (?, ?)";
-            jdbcTemplate.update(sql, userId, postId);
-        } else {
-            String sql = "DELETE FROM bookmark WHERE user_id = ? AND post_id = ?";
-            jdbcTemplate.update(sql, userId, postId);
+        if (toggleWriteBehindService.isEnabled()) {
+            toggleWriteBehindService.enqueueBookmark(userId, postId, isAdd);
+            return;
         }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (isAdd) {
+                String sql = "INSERT IGNORE INTO bookmark (user_id, post_id) VALUES (?, ?)";
+                if (jdbcTemplate.update(sql, userId, postId) > 0) {
+                    jdbcTemplate.update(
+                        "INSERT INTO post_stats (post_id, bookmarks_count) VALUES (?, 1) " +
+                        "ON DUPLICATE KEY UPDATE bookmarks_count = bookmarks_count + 1", postId);
+                }
+            } else {
+                String sql = "DELETE FROM bookmark WHERE user_id = ? AND post_id = ?";
+                if (jdbcTemplate.update(sql, userId, postId) > 0) {
+                    jdbcTemplate.update(
+                        "UPDATE post_stats SET bookmarks_count = bookmarks_count - 1 " +
+                        "WHERE post_id = ? AND bookmarks_count > 0", postId);
+                }
+            }
+        });
+        viewerFlagsService.setBookmarked(userId, postId, isAdd);
     }
 
-   
     private String formatDate(Timestamp timestamp) {
         if (timestamp == null) {
             return "Unknown";
@@ -0,0 +1,73 @@
+package uga.menik.csx370.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Maintains the post_stats counter table.
+ *
+ * The counters are normally kept current by the write paths (toggleLike,
+ * toggleBookmark, addComment). This service repairs any drift, e.g. after rows
+ * were edited by hand or the table was created on an existing database,
+ * by recounting from the like, comment and bookmark tables.
+ */
+@Service
+public class PostStatsService {
+
+    // Recounts one post_id range; the source rows are share-locked by INSERT ... SELECT,
+    // so a concurrent toggle on a post in the range waits instead of being lost.
+    private static final String RECONCILE_SQL =
+        "INSERT INTO post_stats (post_id, likes_count, comments_count, bookmarks_count) " +
+        "SELECT p.post_id, " +
+        "       (SELECT COUNT(*) FROM `like` l WHERE l.post_id = p.post_id), " +
+        "       (SELECT COUNT(*) FROM comment c WHERE c.post_id = p.post_id), " +
+        "       (SELECT COUNT(*) FROM bookmark b WHERE b.post_id = p.post_id) " +
+        "FROM post p " +
+        "WHERE p.post_id > ? AND p.post_id <= ? " +
+        // engaged_at is assigned first, while likes_count and comments_count still hold the old values.
+        "ON DUPLICATE KEY UPDATE engaged_at = IF(likes_count <> VALUES(likes_count) " +
+        "                                        OR comments_count <> VALUES(comments_count), " +
+        "                                        CURRENT_TIMESTAMP, engaged_at), " +
+        "                        likes_count = VALUES(likes_count), " +
+        "                        comments_count = VALUES(comments_count), " +
+        "                        bookmarks_count = VALUES(bookmarks_count)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Number of posts recounted per statement, to keep each transaction short.
+    @Value("${app.post-stats.reconcile-batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Recounts every post's counters in post_id ranges.
+     * Returns the number of post_stats rows that were inserted or changed.
+     */
+    public int reconcile() {
+        Long maxPostId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(post_id), 0) FROM post", Long.class);
+        int changed = 0;
+        for (long from = 0; from < maxPostId; from += batchSize) {
+            changed += jdbcTemplate.update(RECONCILE_SQL, from, from + batchSize);
+        }
+        return changed;
+    }
+
+    /**
+     * Periodic repair job. Runs once shortly after startup and then on the configured interval.
+     */
+    @Scheduled(initialDelayString = "${app.post-stats.reconcile-initial-delay-ms:60000}",
+               fixedDelayString = "${app.post-stats.reconcile-interval-ms:3600000}")
+    public void scheduledReconcile() {
+        try {
+            long start = System.currentTimeMillis();
+            int changed = reconcile();
+            System.out.println("post_stats reconcile: " + changed + " rows changed in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package uga.menik.csx370.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import uga.menik.csx370.utility.AuthorPostRing;
+import uga.menik.csx370.utility.KeysetCursor;
+
+/**
+ * In-process store of every author's most recent post ids.
+ *
+ * createPost appends to it and it is warmed from the post table at startup.
+ * FeedService uses it to assemble a viewer's feed ids with a heap merge over
+ * their followees' rings, without querying the post or timeline tables.
+ * The rings are copied into one per-thread buffer, so a feed request only
+ * allocates its result.
+ */
+@Service
+public class RecentPostStore {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Posts remembered per author; feed pages deeper than this fall back to MySQL.
+    @Value("${app.feed.memory.posts-per-author:64}")
+    private int postsPerAuthor;
+
+    @Value("${app.feed.memory.enabled:true}")
+    private boolean enabled;
+
+    private final Map<Integer, AuthorPostRing> rings = new ConcurrentHashMap<>();
+
+    // Largest per-thread merge buffer kept between requests, in entries (16 bytes each).
+    // Bigger merges get a buffer of their own that is dropped afterwards.
+    private static final int MAX_KEPT_SCRATCH = 8192;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Per-thread merge buffers. Source s's candidates start at s * limit in
+     * ids and times.
+     */
+    private static final class Scratch {
+        long[] ids = new long[0];
+        long[] times = new long[0];
+        int[] lengths = new int[0];
+        boolean[] incomplete = new boolean[0];
+        int[] heap = new int[0];
+        int[] pos = new int[0];
+
+        /**
+         * Returns buffers for k sources of up to limit entries each: this
+         * thread's, grown if needed, or fresh ones for very large merges.
+         */
+        static Scratch get(int k, int limit) {
+            int entries = k * limit;
+            boolean keep = entries <= MAX_KEPT_SCRATCH;
+            Scratch scratch = keep ? SCRATCH.get() : new Scratch();
+            if (scratch.ids.length < entries) {
+                int size = keep ? Math.min(Math.max(entries, 2 * scratch.ids.length), MAX_KEPT_SCRATCH) : entries;
+                scratch.ids = new long[size];
+                scratch.times = new long[size];
+            }
+            if (scratch.lengths.length < k) {
+                int size = Math.max(k, 2 * scratch.lengths.length);
+                scratch.lengths = new int[size];
+                scratch.incomplete = new boolean[size];
+                scratch.heap = new int[size];
+                scratch.pos = new int[size];
+            }
+            return scratch;
+        }
+    }
+
+    // Set once warm-up finished; until then an author without a ring may still have posts.
+    private volatile boolean ready = false;
+
+    /**
+     * Result of a merge: the first size entries of postIds/createdAt, newest first.
+     */
+    public static final class MergeResult {
+        public final long[] postIds;
+        public final long[] createdAt;
+        public final int size;
+
+        MergeResult(long[] postIds, long[] createdAt, int size) {
+            this.postIds = postIds;
+            this.createdAt = createdAt;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Returns whether the store is loaded and may answer feed requests.
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Records a new post by authorId.
+     */
+    public void append(int authorId, long postId, long createdAt) {
+        if (!enabled) {
+            return;
+        }
+        rings.computeIfAbsent(authorId, id -> new AuthorPostRing(postsPerAuthor)).add(postId, createdAt);
+    }
+
+    /**
+     * Merges the rings of the given authors into at most limit entries older than
+     * the cursor, newest first, using a binary heap over the rings' heads.
+     *
+     * Returns null when the answer cannot be trusted: some author's ring ran out
+     * while older posts of theirs exist outside the ring, so the caller must
+     * read from the database instead.
+     */
+    public MergeResult mergeNewestFirst(List<Integer> authorIds, KeysetCursor after, int limit) {
+        int k = authorIds.size();
+        Scratch scratch = Scratch.get(k, limit);
+        long[] ids = scratch.ids;
+        long[] times = scratch.times;
+        int[] lengths = scratch.lengths;
+        boolean[] incomplete = scratch.incomplete;
+        int[] pos = scratch.pos;
+
+        // Snapshot each ring's candidates: at most limit entries per author can reach the page.
+        int sources = 0;
+        for (Integer authorId : authorIds) {
+            AuthorPostRing ring = rings.get(authorId);
+            if (ring == null) {
+                continue;
+            }
+            int n = ring.copyNewestFirst(after, limit, ids, times, sources * limit);
+            boolean truncated = n < 0;
+            if (truncated) {
+                n = -n - 1;
+            }
+            if (n == 0 && !truncated) {
+                continue;
+            }
+            lengths[sources] = n;
+            incomplete[sources] = truncated;
+            pos[sources] = 0;
+            sources++;
+        }
+
+        // Binary min-heap of source indexes, ordered newest head first.
+        int[] heap = scratch.heap;
+        int heapSize = 0;
+        for (int s = 0; s < sources; s++) {
+            if (lengths[s] > 0) {
+                heap[heapSize] = s;
+                siftUp(heap, heapSize, pos, ids, times, limit);
+                heapSize++;
+            } else if (incomplete[s]) {
+                // Nothing in the ring but older posts exist: cannot answer.
+                return null;
+            }
+        }
+
+        long[] outIds = new long[limit];
+        long[] outTimes = new long[limit];
+        int out = 0;
+        while (heapSize > 0 && out < limit) {
+            int s = heap[0];
+            outIds[out] = ids[s * limit + pos[s]];
+            outTimes[out] = times[s * limit + pos[s]];
+            out++;
+            pos[s]++;
+            if (pos[s] < lengths[s]) {
+                siftDown(heap, heapSize, pos, ids, times, limit);
+            } else {
+                if (incomplete[s] && out < limit) {
+                    // This author may have older posts we did not keep.
+                    return null;
+                }
+                heapSize--;
+                heap[0] = heap[heapSize];
+                siftDown(heap, heapSize, pos, ids, times, limit);
+            }
+        }
+        return new MergeResult(outIds, outTimes, out);
+    }
+
+    /**
+     * Loads each author's latest posts. Runs once the application has started;
+     * posts created meanwhile are already in their rings and are not duplicated.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            // One extra row per author tells us whether the ring is truncated.
+            String sql =
+                "SELECT user_id, post_id, created_at, rn FROM ( " +
+                "  SELECT user_id, post_id, created_at, " +
+                "         ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY created_at DESC, post_id DESC) AS rn " +
+                "  FROM post) ranked " +
+                "WHERE rn <= ?";
+            jdbcTemplate.query(sql, rs -> {
+                int authorId = rs.getInt("user_id");
+                AuthorPostRing ring = rings.computeIfAbsent(authorId, id -> new AuthorPostRing(postsPerAuthor));
+                if (rs.getInt("rn") > postsPerAuthor) {
+                    ring.markTruncated();
+                } else {
+                    ring.add(rs.getLong("post_id"), rs.getTimestamp("created_at").getTime());
+                }
+            }, postsPerAuthor + 1);
+            ready = true;
+            System.out.println("Recent post store warmed: " + rings.size() + " authors in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Sources' heads are ids[s * stride + pos[s]] and times[s * stride + pos[s]].
+    private static boolean newer(int a, int b, int[] pos, long[] ids, long[] times, int stride) {
+        int ia = a * stride + pos[a];
+        int ib = b * stride + pos[b];
+        if (times[ia] != times[ib]) {
+            return times[ia] > times[ib];
+        }
+        return ids[ia] > ids[ib];
+    }
+
+    private static void siftUp(int[] heap, int i, int[] pos, long[] ids, long[] times, int stride) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!newer(heap[i], heap[parent], pos, ids, times, stride)) {
+                break;
+            }
+            int tmp = heap[i];
+            heap[i] = heap[parent];
+            heap[parent] = tmp;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, int[] pos, long[] ids, long[] times, int stride) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int best = left;
+            int right = left + 1;
+            if (right < size && newer(heap[right], heap[left], pos, ids, times, stride)) {
+                best = right;
+            }
+            if (!newer(heap[best], heap[i], pos, ids, times, stride)) {
+                break;
+            }
+            int tmp = heap[i];
+            heap[i] = heap[best];
+            heap[best] = tmp;
+            i = best;
+        }
+    }
+}
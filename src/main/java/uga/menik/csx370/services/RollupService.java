@@ -0,0 +1,185 @@
+package uga.menik.csx370.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintains the hourly rollup tables used by the trending page.
+ *
+ * hashtag_usage_hourly holds uses per hashtag and hour, post_likes_hourly
+ * likes received per post and hour. Each is advanced incrementally from a
+ * watermark in rollup_watermark: hashtag usage by post_id, likes by
+ * like.created_at (as epoch seconds). Only rows older than a grace period are
+ * rolled up, so a transaction that committed late is not skipped. Readers add
+ * the raw rows past the watermark to the rollup sums to stay current.
+ *
+ * Unlikes delete rows that may already be rolled up; the like paths call
+ * decrementLikeRollup before deleting so the rollup stays equal to the like table.
+ */
+@Service
+public class RollupService {
+
+    static final String HASHTAG_USAGE = "hashtag_usage";
+    static final String POST_LIKES = "post_likes";
+
+    // Removes a like about to be deleted from its rollup hour, if it was rolled up already.
+    // Reading the watermark row share-locks it, so this cannot interleave with a rollup run.
+    private static final String DECREMENT_LIKE_SQL =
+        "UPDATE post_likes_hourly plh " +
+        "JOIN `like` l ON l.post_id = plh.post_id " +
+        "              AND plh.hour_start = DATE_FORMAT(l.created_at, '%Y-%m-%d %H:00:00') " +
+        "JOIN rollup_watermark w ON w.name = '" + POST_LIKES + "' " +
+        "                       AND l.created_at < FROM_UNIXTIME(w.position) " +
+        "SET plh.likes = plh.likes - 1 " +
+        "WHERE l.user_id = ? AND l.post_id = ? AND plh.likes > 0";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Rows newer than this are left for a later run, in case older transactions are still open.
+    @Value("${app.rollup.grace-seconds:60}")
+    private int graceSeconds;
+
+    // Posts rolled up per transaction.
+    @Value("${app.rollup.hashtag-batch-size:10000}")
+    private int hashtagBatchSize;
+
+    // Hours of likes rolled up per transaction.
+    @Value("${app.rollup.likes-chunk-hours:24}")
+    private int likesChunkHours;
+
+    /**
+     * Takes one like out of the rollups. Call inside the transaction that
+     * deletes the like, before the delete.
+     */
+    public void decrementLikeRollup(long userId, long postId) {
+        jdbcTemplate.update(DECREMENT_LIKE_SQL, userId, postId);
+    }
+
+    /**
+     * Batched form of decrementLikeRollup; each entry is {userId, postId}.
+     */
+    public void decrementLikeRollups(List<Object[]> pairs) {
+        if (!pairs.isEmpty()) {
+            jdbcTemplate.batchUpdate(DECREMENT_LIKE_SQL, pairs);
+        }
+    }
+
+    /**
+     * Rolls up every hashtag use old enough to be final.
+     * Returns the number of posts processed.
+     */
+    public long rollupHashtagUsage() {
+        long processed = 0;
+        while (true) {
+            Long done = transactionTemplate.execute(status -> {
+                long from = lockWatermark(HASHTAG_USAGE);
+                Long to = jdbcTemplate.queryForObject(
+                        "SELECT MAX(post_id) FROM (" +
+                        "  SELECT post_id FROM post " +
+                        "  WHERE post_id > ? AND created_at < (CURRENT_TIMESTAMP - INTERVAL ? SECOND) " +
+                        "  ORDER BY post_id LIMIT ?) batch",
+                        Long.class, from, graceSeconds, hashtagBatchSize);
+                if (to == null) {
+                    return 0L;
+                }
+                jdbcTemplate.update(
+                        "INSERT INTO hashtag_usage_hourly (hour_start, hashtag_id, uses) " +
+                        "SELECT DATE_FORMAT(p.created_at, '%Y-%m-%d %H:00:00') AS hour_start, ph.hashtag_id, COUNT(*) " +
+                        "FROM post_hashtag ph JOIN post p ON p.post_id = ph.post_id " +
+                        "WHERE p.post_id > ? AND p.post_id <= ? " +
+                        "GROUP BY hour_start, ph.hashtag_id " +
+                        "ON DUPLICATE KEY UPDATE uses = uses + VALUES(uses)",
+                        from, to);
+                jdbcTemplate.update("UPDATE rollup_watermark SET position = ? WHERE name = ?", to, HASHTAG_USAGE);
+                return to - from;
+            });
+            if (done == null || done == 0) {
+                return processed;
+            }
+            processed += done;
+        }
+    }
+
+    /**
+     * Rolls up every like old enough to be final, in chunks of hours.
+     * Returns the number of hours of likes processed.
+     */
+    public long rollupPostLikes() {
+        long processed = 0;
+        while (true) {
+            // {hours processed, 1 if the chunk reached the cut-off}
+            long[] done = transactionTemplate.execute(status -> {
+                long watermark = lockWatermark(POST_LIKES);
+                long cutoff = jdbcTemplate.queryForObject(
+                        "SELECT UNIX_TIMESTAMP(CURRENT_TIMESTAMP - INTERVAL ? SECOND)", Long.class, graceSeconds);
+                long from = watermark;
+                if (from == 0) {
+                    // First run: start at the oldest like instead of walking up from 1970.
+                    Long oldest = jdbcTemplate.queryForObject(
+                            "SELECT UNIX_TIMESTAMP(MIN(created_at)) FROM `like`", Long.class);
+                    from = oldest == null ? cutoff : oldest;
+                }
+                long to = Math.min(cutoff, from + likesChunkHours * 3600L);
+                if (to <= from) {
+                    return new long[] { 0, 1 };
+                }
+                jdbcTemplate.update(
+                        "INSERT INTO post_likes_hourly (hour_start, post_id, likes) " +
+                        "SELECT DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00') AS hour_start, post_id, COUNT(*) " +
+                        "FROM `like` " +
+                        "WHERE created_at >= FROM_UNIXTIME(?) AND created_at < FROM_UNIXTIME(?) " +
+                        "GROUP BY hour_start, post_id " +
+                        "ON DUPLICATE KEY UPDATE likes = likes + VALUES(likes)",
+                        from, to);
+                jdbcTemplate.update("UPDATE rollup_watermark SET position = ? WHERE name = ?", to, POST_LIKES);
+                return new long[] { (to - from + 3599) / 3600, to == cutoff ? 1 : 0 };
+            });
+            processed += done[0];
+            if (done[1] == 1) {
+                return processed;
+            }
+        }
+    }
+
+    /**
+     * Periodic rollup job.
+     */
+    @Scheduled(initialDelayString = "${app.rollup.initial-delay-ms:30000}",
+               fixedDelayString = "${app.rollup.interval-ms:60000}")
+    public void scheduledRollup() {
+        try {
+            long start = System.currentTimeMillis();
+            long posts = rollupHashtagUsage();
+            long hours = rollupPostLikes();
+            if (posts > 0 || hours > 0) {
+                System.out.println("Rollups: " + posts + " posts, " + hours + " hours of likes in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads a watermark and locks it for the rest of the transaction.
+     */
+    private long lockWatermark(String name) {
+        List<Long> found = jdbcTemplate.queryForList(
+                "SELECT position FROM rollup_watermark WHERE name = ? FOR UPDATE", Long.class, name);
+        if (found.isEmpty()) {
+            jdbcTemplate.update("INSERT IGNORE INTO rollup_watermark (name, position) VALUES (?, 0)", name);
+            return 0;
+        }
+        return found.get(0);
+    }
+}
@@ -0,0 +1,349 @@
+package uga.menik.csx370.services;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Write-behind buffer for like and bookmark toggles.
+ *
+ * When enabled, toggleLike and toggleBookmark only record the user's final
+ * intent for a (user, post) pair here; toggling the same pair again before a
+ * flush overwrites the earlier intent instead of adding another write. Pending
+ * toggles are written as JDBC batches in one transaction when enough have
+ * piled up or on a timer, and post_stats (and the authors' user_stats
+ * likes_received) move by the rows the batch actually changed.
+ *
+ * The acting user sees their toggle immediately through ViewerFlagsService,
+ * and PostHydrationService adds the pending like deltas to the counters it
+ * shows, so pages stay consistent before the flush.
+ */
+@Service
+public class ToggleWriteBehindService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ViewerFlagsService viewerFlagsService;
+    private final RollupService rollupService;
+
+    private final boolean enabled;
+    // Pending pairs that trigger a flush from the request thread.
+    private final int flushSize;
+    // Pending pairs at which toggling callers wait for a flush to finish.
+    private final int maxPending;
+
+    private final Map<ToggleKey, Pending> pending = new ConcurrentHashMap<>();
+    // Likes not yet written, per post, as +1/-1 sums for the displayed counters.
+    private final Map<Long, AtomicInteger> pendingLikeDeltas = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Counter enqueued;
+    private final Counter flushedRows;
+    private final Timer flushTimer;
+
+    @Autowired
+    public ToggleWriteBehindService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                    ViewerFlagsService viewerFlagsService, RollupService rollupService,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.toggles.write-behind.enabled:false}") boolean enabled,
+                                    @Value("${app.toggles.write-behind.flush-size:500}") int flushSize,
+                                    @Value("${app.toggles.write-behind.max-pending:10000}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.viewerFlagsService = viewerFlagsService;
+        this.rollupService = rollupService;
+        this.enabled = enabled;
+        this.flushSize = flushSize;
+        this.maxPending = maxPending;
+
+        this.enqueued = Counter.builder("toggles.enqueued")
+                .description("Like and bookmark toggles accepted by the write-behind buffer")
+                .register(meterRegistry);
+        this.flushedRows = Counter.builder("toggles.flushed")
+                .description("Like and bookmark rows written by write-behind flushes")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("toggles.flush")
+                .description("Time to write one batch of pending toggles")
+                .register(meterRegistry);
+        Gauge.builder("toggles.queue.depth", pending, Map::size)
+                .description("(user, post) pairs waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("toggles.coalescing.ratio", this, s -> s.coalescingRatio())
+                .description("Share of toggles absorbed by a later toggle of the same pair")
+                .register(meterRegistry);
+    }
+
+    private enum Kind { LIKE, BOOKMARK }
+
+    private static final class ToggleKey {
+        final Kind kind;
+        final long userId;
+        final long postId;
+
+        ToggleKey(Kind kind, long userId, long postId) {
+            this.kind = kind;
+            this.userId = userId;
+            this.postId = postId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ToggleKey)) {
+                return false;
+            }
+            ToggleKey other = (ToggleKey) o;
+            return kind == other.kind && userId == other.userId && postId == other.postId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * kind.hashCode() + Long.hashCode(userId)) + Long.hashCode(postId);
+        }
+    }
+
+    /**
+     * The latest intent for a pair, and how far it moved the displayed counter.
+     */
+    private static final class Pending {
+        final boolean isAdd;
+        final int delta;
+
+        Pending(boolean isAdd, int delta) {
+            this.isAdd = isAdd;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * Returns whether toggles should go through this buffer.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a like or unlike.
+     */
+    public void enqueueLike(Long userId, Long postId, boolean isAdd) {
+        boolean changed = viewerFlagsService.setLiked(userId, postId, isAdd);
+        int delta = changed ? (isAdd ? 1 : -1) : 0;
+        if (delta != 0) {
+            pendingLikeDeltas.computeIfAbsent(postId, id -> new AtomicInteger()).addAndGet(delta);
+        }
+        enqueue(new ToggleKey(Kind.LIKE, userId, postId), isAdd, delta);
+    }
+
+    /**
+     * Queues a bookmark or unbookmark.
+     */
+    public void enqueueBookmark(Long userId, Long postId, boolean isAdd) {
+        viewerFlagsService.setBookmarked(userId, postId, isAdd);
+        enqueue(new ToggleKey(Kind.BOOKMARK, userId, postId), isAdd, 0);
+    }
+
+    /**
+     * Returns the not-yet-written change to a post's like count.
+     */
+    public int pendingLikeDelta(long postId) {
+        AtomicInteger delta = pendingLikeDeltas.get(postId);
+        return delta == null ? 0 : delta.get();
+    }
+
+    private void enqueue(ToggleKey key, boolean isAdd, int delta) {
+        pending.merge(key, new Pending(isAdd, delta),
+                (old, now) -> new Pending(now.isAdd, old.delta + now.delta));
+        enqueued.increment();
+
+        if (pending.size() >= maxPending) {
+            // Back-pressure: wait for the running flush, then flush what is left.
+            flush();
+        } else if (pending.size() >= flushSize && flushLock.tryLock()) {
+            try {
+                flushLocked();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Time trigger: writes whatever is pending.
+     */
+    @Scheduled(fixedDelayString = "${app.toggles.write-behind.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        if (enabled && !pending.isEmpty()) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all pending toggles now. Pages that read the like or bookmark
+     * tables directly call this first so they include the user's own toggles.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLocked() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Drain entry by entry; a toggle arriving meanwhile starts a fresh entry for the next flush.
+        Map<ToggleKey, Pending> batch = new HashMap<>();
+        for (ToggleKey key : pending.keySet()) {
+            Pending p = pending.remove(key);
+            if (p != null) {
+                batch.put(key, p);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start();
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(batch));
+        } catch (Exception e) {
+            // One bad pair (e.g. a deleted post) fails the whole batch; retry pair by pair.
+            e.printStackTrace();
+            for (Map.Entry<ToggleKey, Pending> entry : batch.entrySet()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> write(Map.of(entry.getKey(), entry.getValue())));
+                } catch (Exception single) {
+                    single.printStackTrace();
+                    // The in-memory set assumed this toggle succeeded; reload it from the database.
+                    viewerFlagsService.evict(entry.getKey().userId);
+                }
+            }
+        } finally {
+            sample.stop(flushTimer);
+            flushedRows.increment(batch.size());
+            for (Map.Entry<ToggleKey, Pending> entry : batch.entrySet()) {
+                int delta = entry.getValue().delta;
+                if (delta != 0) {
+                    AtomicInteger sum = pendingLikeDeltas.get(entry.getKey().postId);
+                    if (sum != null && sum.addAndGet(-delta) == 0) {
+                        pendingLikeDeltas.remove(entry.getKey().postId, sum);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a set of final intents with one batch per statement, then moves
+     * post_stats by the rows that actually changed.
+     */
+    private void write(Map<ToggleKey, Pending> batch) {
+        List<ToggleKey> likeAdds = new ArrayList<>();
+        List<ToggleKey> likeRemoves = new ArrayList<>();
+        List<ToggleKey> bookmarkAdds = new ArrayList<>();
+        List<ToggleKey> bookmarkRemoves = new ArrayList<>();
+        for (Map.Entry<ToggleKey, Pending> entry : batch.entrySet()) {
+            ToggleKey key = entry.getKey();
+            boolean isAdd = entry.getValue().isAdd;
+            if (key.kind == Kind.LIKE) {
+                (isAdd ? likeAdds : likeRemoves).add(key);
+            } else {
+                (isAdd ? bookmarkAdds : bookmarkRemoves).add(key);
+            }
+        }
+
+        Map<Long, Integer> likeDeltas = new HashMap<>();
+        Map<Long, Integer> bookmarkDeltas = new HashMap<>();
+        run("INSERT IGNORE INTO `like` (user_id, post_id) VALUES (?, ?)", likeAdds, 1, likeDeltas);
+        List<Object[]> unliked = new ArrayList<>(likeRemoves.size());
+        for (ToggleKey key : likeRemoves) {
+            unliked.add(new Object[] { key.userId, key.postId });
+        }
+        rollupService.decrementLikeRollups(unliked);
+        run("DELETE FROM `like` WHERE user_id = ? AND post_id = ?", likeRemoves, -1, likeDeltas);
+        run("INSERT IGNORE INTO bookmark (user_id, post_id) VALUES (?, ?)", bookmarkAdds, 1, bookmarkDeltas);
+        run("DELETE FROM bookmark WHERE user_id = ? AND post_id = ?", bookmarkRemoves, -1, bookmarkDeltas);
+
+        applyDeltas("likes_count", likeDeltas);
+        applyDeltas("bookmarks_count", bookmarkDeltas);
+        applyLikesReceived(likeDeltas);
+    }
+
+    private void run(String sql, List<ToggleKey> keys, int sign, Map<Long, Integer> deltas) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(keys.size());
+        for (ToggleKey key : keys) {
+            args.add(new Object[] { key.userId, key.postId });
+        }
+        int[] counts = jdbcTemplate.batchUpdate(sql, args);
+        for (int i = 0; i < counts.length; i++) {
+            // SUCCESS_NO_INFO only appears with rewritten batches; count the row as changed.
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                deltas.merge(keys.get(i).postId, sign, Integer::sum);
+            }
+        }
+    }
+
+    private void applyDeltas(String column, Map<Long, Integer> deltas) {
+        List<Object[]> args = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            if (entry.getValue() != 0) {
+                args.add(new Object[] { entry.getKey(), entry.getValue(), entry.getValue() });
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        // Likes feed the hot score, so they mark the post for the next scorer run.
+        String engaged = "likes_count".equals(column) ? ", engaged_at = CURRENT_TIMESTAMP" : "";
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO post_stats (post_id, " + column + ") VALUES (?, GREATEST(?, 0)) " +
+                "ON DUPLICATE KEY UPDATE " + column + " = GREATEST(" + column + " + ?, 0)" + engaged, args);
+    }
+
+    /**
+     * Moves each liked post's author's user_stats likes_received by the
+     * post's like delta.
+     */
+    private void applyLikesReceived(Map<Long, Integer> deltas) {
+        List<Object[]> args = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            if (entry.getValue() != 0) {
+                args.add(new Object[] { entry.getValue(), entry.getKey(), entry.getValue() });
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO user_stats (user_id, likes_received) " +
+                "SELECT user_id, GREATEST(?, 0) FROM post WHERE post_id = ? " +
+                "ON DUPLICATE KEY UPDATE likes_received = GREATEST(likes_received + ?, 0)", args);
+    }
+
+    private double coalescingRatio() {
+        double in = enqueued.count();
+        return in == 0 ? 0 : 1 - (flushedRows.count() + pending.size()) / in;
+    }
+}
@@ -0,0 +1,116 @@
+package uga.menik.csx370.services;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Shared result cache in front of TrendingService.
+ *
+ * Trending results do not depend on the viewer, so one entry per call and
+ * (days, limit) serves everybody. Concurrent misses on a key wait for a
+ * single computation instead of each running the query. Once an entry is
+ * older than the refresh interval, the next request still gets it
+ * immediately while one background reload replaces it (stale-while-revalidate),
+ * so each key costs at most one query per refresh interval. Entries nobody
+ * asked for within the expiry are dropped.
+ */
+@Service
+public class TrendingCacheService {
+
+    private enum Call { TOP_HASHTAGS, APPROX_HASHTAGS, MOST_LIKED, HOT }
+
+    private static final class TrendKey {
+        final Call call;
+        final int days;
+        final int limit;
+
+        TrendKey(Call call, int days, int limit) {
+            this.call = call;
+            this.days = days;
+            // Same clamp as TrendingService, so equivalent requests share an entry.
+            this.limit = Math.max(1, Math.min(limit, 50));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TrendKey)) {
+                return false;
+            }
+            TrendKey other = (TrendKey) o;
+            return call == other.call && days == other.days && limit == other.limit;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * call.hashCode() + days) + limit;
+        }
+    }
+
+    private final TrendingService trendingService;
+
+    private final LoadingCache<TrendKey, Object> results;
+
+    @Autowired
+    public TrendingCacheService(TrendingService trendingService, MeterRegistry meterRegistry,
+                                @Value("${app.trending.cache.refresh-seconds:30}") long refreshSeconds,
+                                @Value("${app.trending.cache.expire-seconds:300}") long expireSeconds,
+                                @Value("${app.trending.cache.max-size:1000}") long maxSize) {
+        this.trendingService = trendingService;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(Duration.ofSeconds(refreshSeconds))
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, results, "trending.results");
+    }
+
+    private Object load(TrendKey key) {
+        switch (key.call) {
+            case TOP_HASHTAGS:
+                return trendingService.getTopHashtags(key.days, key.limit);
+            case APPROX_HASHTAGS:
+                // null (sketches cannot answer) is not cached.
+                return trendingService.getApproximateTopHashtags(key.days, key.limit);
+            case MOST_LIKED:
+                return trendingService.getMostLikedPosts(key.days, key.limit);
+            case HOT:
+                return trendingService.getHotPosts(key.days, key.limit);
+            default:
+                throw new IllegalArgumentException("Unknown trending call: " + key.call);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<TrendingService.TagTrend> getTopHashtags(int days, int limit) {
+        return (List<TrendingService.TagTrend>) results.get(new TrendKey(Call.TOP_HASHTAGS, days, limit));
+    }
+
+    public HashtagTrendService.ApproximateTrends getApproximateTopHashtags(int days, int limit) {
+        return (HashtagTrendService.ApproximateTrends) results.get(new TrendKey(Call.APPROX_HASHTAGS, days, limit));
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<TrendingService.PopularPost> getMostLikedPosts(int days, int limit) {
+        return (List<TrendingService.PopularPost>) results.get(new TrendKey(Call.MOST_LIKED, days, limit));
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<TrendingService.PopularPost> getHotPosts(int days, int limit) {
+        return (List<TrendingService.PopularPost>) results.get(new TrendKey(Call.HOT, days, limit));
+    }
+
+    public boolean isApproximateByDefault() {
+        return trendingService.isApproximateByDefault();
+    }
+}
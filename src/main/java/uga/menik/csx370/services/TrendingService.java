@@ -1,6 +1,7 @@
 package uga.menik.csx370.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
@@ -13,6 +14,16 @@ public class TrendingService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private HashtagDictionary hashtagDictionary;
+
+    @Autowired
+    private HashtagTrendService hashtagTrendService;
+
+    // Default hashtag counting mode for /trending: "exact" or "approx".
+    @Value("${app.trending.mode:exact}")
+    private String defaultMode;
+
     // Data classes for returning results
     public static class TagTrend {
         public final String tag;
@@ -48,30 +59,149 @@ public class TrendingService {
 
     /** 
      * Top hashtags in the last N days. 
+     * Answered from the in-memory hourly counters when they cover the window;
+     * otherwise counts are grouped by hashtag_id alone and named through the
+     * HashtagDictionary, so the hashtag table is not joined. The query stays
+     * bounded by the limit; a tie at the cutoff costs one more query for the
+     * tags at that count.
     */
     public List<TagTrend> getTopHashtags(int days, int limit) {
         // Ensure limit is within reasonable bounds
         int safeLimit = Math.max(1, Math.min(limit, 50));
 
-        String sql =
-            "SELECT h.tag, COUNT(*) AS usage_count " +
-            "FROM post_hashtag ph " +
-            "JOIN hashtag h ON h.hashtag_id = ph.hashtag_id " +
-            "JOIN post p ON p.post_id = ph.post_id " +
-            "WHERE p.created_at >= (CURRENT_TIMESTAMP - INTERVAL ? DAY) " +
-            "GROUP BY h.tag " +
-            "ORDER BY usage_count DESC, h.tag ASC " +
-            "LIMIT " + safeLimit;
+        List<TagTrend> fromMemory = hashtagTrendService.getTopHashtags(days, safeLimit);
+        if (fromMemory != null) {
+            return fromMemory;
+        }
+
+        // Hours already rolled up come from hashtag_usage_hourly; posts past the
+        // rollup watermark (the last minute or two) are counted from post_hashtag.
+        String counts =
+            "SELECT hashtag_id, SUM(uses) AS usage_count FROM ( " +
+            "  SELECT hashtag_id, uses FROM hashtag_usage_hourly " +
+            "  WHERE hour_start >= DATE_FORMAT(CURRENT_TIMESTAMP - INTERVAL ? DAY, '%Y-%m-%d %H:00:00') " +
+            "  UNION ALL " +
+            "  SELECT ph.hashtag_id, 1 FROM post_hashtag ph " +
+            "  JOIN post p ON p.post_id = ph.post_id " +
+            "  WHERE p.post_id > (SELECT position FROM rollup_watermark WHERE name = 'hashtag_usage') " +
+            "    AND p.created_at >= (CURRENT_TIMESTAMP - INTERVAL ? DAY) " +
+            ") usage_rows " +
+            "GROUP BY hashtag_id ";
+
+        // Ties are broken by tag name, which only the dictionary knows, so one
+        // extra row is fetched to tell whether a tie crosses the cutoff.
+        List<TagTrend> out = new ArrayList<>();
+        try {
+            List<TagTrend> top = queryTagCounts(counts + "ORDER BY usage_count DESC LIMIT ?",
+                    days, days, safeLimit + 1);
+            if (top.size() > safeLimit
+                    && top.get(safeLimit).usageCount == top.get(safeLimit - 1).usageCount) {
+                // Keep the rows above the tied count and re-read every tag at that count.
+                long cutoff = top.get(safeLimit).usageCount;
+                for (TagTrend trend : top) {
+                    if (trend.usageCount > cutoff) {
+                        out.add(trend);
+                    }
+                }
+                out.addAll(queryTagCounts(counts + "HAVING usage_count = ?", days, days, cutoff));
+            } else {
+                out.addAll(top);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        out.sort((a, b) -> a.usageCount != b.usageCount
+                ? Long.compare(b.usageCount, a.usageCount)
+                : a.tag.compareTo(b.tag));
+        return out.size() > safeLimit ? new ArrayList<>(out.subList(0, safeLimit)) : out;
+    }
 
+    /**
+     * Runs a hashtag_id, usage_count query and names the rows through the HashtagDictionary.
+     */
+    private List<TagTrend> queryTagCounts(String sql, Object... args) throws SQLException {
         List<TagTrend> out = new ArrayList<>();
+        try (Connection conn = jdbcTemplate.getDataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String tag = hashtagDictionary.getTag(rs.getInt("hashtag_id"));
+                    if (tag != null) {
+                        out.add(new TagTrend(tag, rs.getLong("usage_count")));
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns whether /trending uses approximate hashtag counts when the request does not say.
+     */
+    public boolean isApproximateByDefault() {
+        return "approx".equalsIgnoreCase(defaultMode);
+    }
+
+    /**
+     * Estimated top hashtags in the last N days, from fixed-size sketches.
+     * Returns null when the sketches cannot answer (window too long or not
+     * loaded yet); callers then use getTopHashtags.
+     */
+    public HashtagTrendService.ApproximateTrends getApproximateTopHashtags(int days, int limit) {
+        int safeLimit = Math.max(1, Math.min(limit, 50));
+        return hashtagTrendService.getApproximateTopHashtags(days, safeLimit);
+    }
+
+    /** 
+     * Most liked posts in the last N days, by likes received in that window.
+     * Rolled-up hours come from post_likes_hourly; likes past the rollup
+     * watermark are counted from the like table.
+    */
+    public List<PopularPost> getMostLikedPosts(int days, int limit) {
+        int safeLimit = Math.max(1, Math.min(limit, 50));
+
+        String sql =
+            "SELECT p.post_id, p.content, p.created_at, u.userId, u.firstName, u.lastName, " +
+            "       t.like_count, " +
+            "       COALESCE(ps.comments_count, 0) AS comment_count " +
+            "FROM ( " +
+            "  SELECT post_id, SUM(likes) AS like_count FROM ( " +
+            "    SELECT post_id, likes FROM post_likes_hourly " +
+            "    WHERE hour_start >= DATE_FORMAT(CURRENT_TIMESTAMP - INTERVAL ? DAY, '%Y-%m-%d %H:00:00') " +
+            "    UNION ALL " +
+            "    SELECT post_id, 1 FROM `like` " +
+            "    WHERE created_at >= (SELECT FROM_UNIXTIME(position) FROM rollup_watermark WHERE name = 'post_likes') " +
+            "      AND created_at >= (CURRENT_TIMESTAMP - INTERVAL ? DAY) " +
+            "  ) like_rows " +
+            "  GROUP BY post_id " +
+            "  HAVING like_count > 0 " +
+            "  ORDER BY like_count DESC, post_id DESC " +
+            "  LIMIT " + safeLimit +
+            ") t " +
+            "JOIN post p ON p.post_id = t.post_id " +
+            "JOIN user u ON u.userId = p.user_id " +
+            "LEFT JOIN post_stats ps ON ps.post_id = p.post_id " +
+            "ORDER BY t.like_count DESC, p.created_at DESC";
+
+        List<PopularPost> out = new ArrayList<>();
         try (Connection conn = jdbcTemplate.getDataSource().getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, days);
+            ps.setInt(2, days);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    out.add(new TagTrend(
-                        rs.getString("tag"),
-                        rs.getLong("usage_count")
+                    out.add(new PopularPost(
+                        rs.getLong("post_id"),
+                        rs.getString("content"),
+                        rs.getTimestamp("created_at"),
+                        rs.getInt("like_count"),
+                        rs.getInt("comment_count"),
+                        rs.getInt("userId"),
+                        rs.getString("firstName"),
+                        rs.getString("lastName")
                     ));
                 }
             }
@@ -81,22 +211,22 @@ public class TrendingService {
         return out;
     }
 
-    /** 
-     * Most liked posts in the last N days.
-    */
-    public List<PopularPost> getMostLikedPosts(int days, int limit) {
+    /**
+     * Hottest posts created in the last N days, by the precomputed hot_score
+     * (see HotScoreService). Walks idx_post_stats_hot from the top, so only
+     * about limit rows are read.
+     */
+    public List<PopularPost> getHotPosts(int days, int limit) {
         int safeLimit = Math.max(1, Math.min(limit, 50));
 
         String sql =
             "SELECT p.post_id, p.content, p.created_at, u.userId, u.firstName, u.lastName, " +
-            "       COALESCE(lc.likes, 0)  AS like_count, " +
-            "       COALESCE(cc.comments, 0) AS comment_count " +
-            "FROM post p " +
+            "       ps.likes_count AS like_count, ps.comments_count AS comment_count " +
+            "FROM post_stats ps " +
+            "JOIN post p ON p.post_id = ps.post_id " +
             "JOIN user u ON u.userId = p.user_id " +
-            "LEFT JOIN (SELECT post_id, COUNT(*) AS likes FROM `like` GROUP BY post_id) lc ON lc.post_id = p.post_id " +
-            "LEFT JOIN (SELECT post_id, COUNT(*) AS comments FROM comment GROUP BY post_id) cc ON cc.post_id = p.post_id " +
             "WHERE p.created_at >= (CURRENT_TIMESTAMP - INTERVAL ? DAY) " +
-            "ORDER BY like_count DESC, p.created_at DESC " +
+            "ORDER BY ps.hot_score DESC " +
             "LIMIT " + safeLimit;
 
         List<PopularPost> out = new ArrayList<>();
@@ -0,0 +1,201 @@
+package uga.menik.csx370.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import uga.menik.csx370.utility.TrigramIndex;
+
+/**
+ * Name search for people.
+ *
+ * Usernames, first names and last names are kept in an in-memory
+ * TrigramIndex, built from user at startup; registerUser adds every new
+ * user. Matches are ranked by how many edits they needed, then by follower
+ * count from FollowGraphService, then newest user first. Typo matches are
+ * only looked for when there are fewer exact prefix matches than requested.
+ *
+ * Until the index is loaded, searches fall back to a prefix match on user.
+ */
+@Service
+public class UserSearchService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final FollowGraphService followGraphService;
+
+    private final boolean enabled;
+
+    private final Timer searchTimer;
+
+    // Guarded by lock.
+    private TrigramIndex index = new TrigramIndex();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Users registered before warm-up finished, replayed once the index is built.
+    // Guarded by this.
+    private List<Object[]> pendingUsers = new ArrayList<>();
+
+    private volatile boolean ready = false;
+
+    @Autowired
+    public UserSearchService(JdbcTemplate jdbcTemplate, FollowGraphService followGraphService,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.people.search.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.followGraphService = followGraphService;
+        this.enabled = enabled;
+        this.searchTimer = Timer.builder("people.search")
+                .description("People name searches answered from the index")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("people.search.users", this, s -> s.indexedUsers())
+                .description("Users in the people name index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indexes one newly registered user.
+     */
+    public void addUser(int userId, String username, String firstName, String lastName) {
+        if (!enabled) {
+            return;
+        }
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    if (pendingUsers != null) {
+                        pendingUsers.add(new Object[] { userId, username, firstName, lastName });
+                    }
+                    return;
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            index.add(userId, username, firstName, lastName);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of up to limit users whose username or names match
+     * every word of query, best match first.
+     */
+    public List<Integer> search(String query, int limit) {
+        if (!enabled || !ready) {
+            String prefix = escapeLike(query.trim()) + "%";
+            return jdbcTemplate.queryForList(
+                    "SELECT userId FROM user WHERE username LIKE ? OR firstName LIKE ? OR lastName LIKE ? " +
+                    "ORDER BY userId DESC LIMIT ?",
+                    Integer.class, prefix, prefix, prefix, limit);
+        }
+        long start = System.nanoTime();
+        List<TrigramIndex.Match> matches;
+        lock.readLock().lock();
+        try {
+            matches = index.search(query, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Min-heap of the best limit matches; its head is the weakest. Followers are read once per match.
+        int[] followers = new int[matches.size()];
+        Comparator<Integer> weakestFirst = (a, b) -> {
+            TrigramIndex.Match x = matches.get(a);
+            TrigramIndex.Match y = matches.get(b);
+            if (x.edits != y.edits) {
+                return Integer.compare(y.edits, x.edits);
+            }
+            if (followers[a] != followers[b]) {
+                return Integer.compare(followers[a], followers[b]);
+            }
+            return Integer.compare(x.id, y.id);
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, weakestFirst);
+        for (int i = 0; i < matches.size(); i++) {
+            followers[i] = followGraphService.followerCount(matches.get(i).id);
+            best.add(i);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        Integer[] ranked = new Integer[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = matches.get(best.poll()).id;
+        }
+        List<Integer> out = new ArrayList<>(Arrays.asList(ranked));
+        searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return out;
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private int indexedUsers() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the index from the user table.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            TrigramIndex built = new TrigramIndex();
+            jdbcTemplate.query("SELECT userId, username, firstName, lastName FROM user ORDER BY userId", rs -> {
+                built.add(rs.getInt("userId"), rs.getString("username"),
+                        rs.getString("firstName"), rs.getString("lastName"));
+            });
+
+            synchronized (this) {
+                // Users the query already saw are skipped by TrigramIndex.add.
+                for (Object[] user : pendingUsers) {
+                    built.add((Integer) user[0], (String) user[1], (String) user[2], (String) user[3]);
+                }
+                lock.writeLock().lock();
+                try {
+                    index = built;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                pendingUsers = null;
+                ready = true;
+            }
+            System.out.println("People search index ready in " + (System.currentTimeMillis() - start) + " ms, "
+                    + built.size() + " users");
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Stay on the SQL path; stop buffering users that will never be replayed.
+            synchronized (this) {
+                pendingUsers = null;
+            }
+        }
+    }
+}
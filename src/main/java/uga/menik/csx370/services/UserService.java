@@ -9,6 +9,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import javax.sql.DataSource;
 
@@ -30,15 +31,18 @@ public class UserService {
     private final DataSource dataSource;
     // Password encoder for hashing passwords.
     private final BCryptPasswordEncoder passwordEncoder;
+    // Name index for people search; new users are added on registration.
+    private final UserSearchService userSearchService;
     private User loggedInUser = null;
 
     /**
      * Constructor-based dependency injection for DataSource.
      */
     @Autowired
-    public UserService(DataSource dataSource) {
+    public UserService(DataSource dataSource, UserSearchService userSearchService) {
         this.dataSource = dataSource;
         this.passwordEncoder = new BCryptPasswordEncoder();
+        this.userSearchService = userSearchService;
     }
 
     /**
@@ -116,19 +120,25 @@ public class UserService {
     /**
      * Registers a new user with the given details. 
      * Returns true if registration is successful, false otherwise.
+     * The new user is added to the people search index.
      */
     public boolean registerUser(String username, String password, String firstName, String lastName)
             throws SQLException {
         final String registerSql = "insert into user (username, password, firstName, lastName) values (?, ?, ?, ?)";
 
         try (Connection conn = dataSource.getConnection();
-                PreparedStatement registerStmt = conn.prepareStatement(registerSql)) {
+                PreparedStatement registerStmt = conn.prepareStatement(registerSql, Statement.RETURN_GENERATED_KEYS)) {
             registerStmt.setString(1, username);
             registerStmt.setString(2, passwordEncoder.encode(password));
             registerStmt.setString(3, firstName);
             registerStmt.setString(4, lastName);
 
             int rowsAffected = registerStmt.executeUpdate();
+            try (ResultSet keys = registerStmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    userSearchService.addUser(keys.getInt(1), username, firstName, lastName);
+                }
+            }
             return rowsAffected > 0;
         }
     }
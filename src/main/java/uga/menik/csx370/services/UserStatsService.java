@@ -0,0 +1,94 @@
+package uga.menik.csx370.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import uga.menik.csx370.models.UserStats;
+
+/**
+ * Reads and maintains the user_stats counter table.
+ *
+ * The counters are normally kept current by the write paths (follow,
+ * unfollow, createPost, toggleLike). A profile header reads them with one
+ * primary-key lookup. This service also repairs any drift, e.g. after rows
+ * were edited by hand, by recounting from the follow, post and like tables.
+ */
+@Service
+public class UserStatsService {
+
+    // Recounts one userId range; see PostStatsService for why INSERT ... SELECT.
+    private static final String RECONCILE_SQL =
+        "INSERT INTO user_stats (user_id, followers_count, following_count, posts_count, likes_received) " +
+        "SELECT u.userId, " +
+        "       (SELECT COUNT(*) FROM follow f WHERE f.followee_id = u.userId), " +
+        "       (SELECT COUNT(*) FROM follow f WHERE f.follower_id = u.userId), " +
+        "       (SELECT COUNT(*) FROM post p WHERE p.user_id = u.userId), " +
+        "       (SELECT COUNT(*) FROM `like` l JOIN post p ON p.post_id = l.post_id WHERE p.user_id = u.userId) " +
+        "FROM user u " +
+        "WHERE u.userId > ? AND u.userId <= ? " +
+        "ON DUPLICATE KEY UPDATE followers_count = VALUES(followers_count), " +
+        "                        following_count = VALUES(following_count), " +
+        "                        posts_count = VALUES(posts_count), " +
+        "                        likes_received = VALUES(likes_received)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Number of users recounted per statement, to keep each transaction short.
+    @Value("${app.user-stats.reconcile-batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Returns userId's name and counters, or null if there is no such user.
+     * Users without a user_stats row yet have all counters at zero.
+     */
+    public UserStats getStats(int userId) {
+        List<UserStats> rows = jdbcTemplate.query(
+                "SELECT u.userId, u.firstName, u.lastName, " +
+                "       COALESCE(s.followers_count, 0) AS followers_count, " +
+                "       COALESCE(s.following_count, 0) AS following_count, " +
+                "       COALESCE(s.posts_count, 0) AS posts_count, " +
+                "       COALESCE(s.likes_received, 0) AS likes_received " +
+                "FROM user u LEFT JOIN user_stats s ON s.user_id = u.userId " +
+                "WHERE u.userId = ?",
+                (rs, rowNum) -> new UserStats(rs.getString("userId"), rs.getString("firstName"),
+                        rs.getString("lastName"), rs.getInt("followers_count"), rs.getInt("following_count"),
+                        rs.getInt("posts_count"), rs.getInt("likes_received")),
+                userId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Recounts every user's counters in userId ranges.
+     * Returns the number of user_stats rows that were inserted or changed.
+     */
+    public int reconcile() {
+        Integer maxUserId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(userId), 0) FROM user", Integer.class);
+        int changed = 0;
+        for (long from = 0; from < maxUserId; from += batchSize) {
+            changed += jdbcTemplate.update(RECONCILE_SQL, from, from + batchSize);
+        }
+        return changed;
+    }
+
+    /**
+     * Periodic repair job. Runs once shortly after startup and then on the configured interval.
+     */
+    @Scheduled(initialDelayString = "${app.user-stats.reconcile-initial-delay-ms:60000}",
+               fixedDelayString = "${app.user-stats.reconcile-interval-ms:3600000}")
+    public void scheduledReconcile() {
+        try {
+            long start = System.currentTimeMillis();
+            int changed = reconcile();
+            System.out.println("user_stats reconcile: " + changed + " rows changed in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
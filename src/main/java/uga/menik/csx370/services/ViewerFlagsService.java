@@ -0,0 +1,116 @@
+package uga.menik.csx370.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Keeps, per active user, compressed bitmaps of the post ids they have liked
+ * and bookmarked.
+ *
+ * A user's sets are loaded on their first request, kept current by toggleLike
+ * and toggleBookmark, and dropped when their session ends (see
+ * SessionEvictionListener) or after sitting idle. With these sets the
+ * hearted/bookmarked flags of any page of posts are computed in memory
+ * instead of with per-query joins on like and bookmark.
+ */
+@Service
+public class ViewerFlagsService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final LoadingCache<Long, ViewerFlags> flags;
+
+    @Autowired
+    public ViewerFlagsService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                              @Value("${app.viewer-flags.idle-expiry-minutes:30}") long idleExpiryMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Concurrent first requests for the same user share one load.
+        this.flags = Caffeine.newBuilder()
+                .expireAfterAccess(idleExpiryMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, flags, "viewer.flags");
+    }
+
+    /**
+     * One user's liked and bookmarked post ids. Guarded by its own monitor.
+     */
+    public static final class ViewerFlags {
+        private final Roaring64NavigableMap liked = new Roaring64NavigableMap();
+        private final Roaring64NavigableMap bookmarked = new Roaring64NavigableMap();
+
+        public synchronized boolean isLiked(long postId) {
+            return liked.contains(postId);
+        }
+
+        public synchronized boolean isBookmarked(long postId) {
+            return bookmarked.contains(postId);
+        }
+
+        synchronized boolean setLiked(long postId, boolean value) {
+            return set(liked, postId, value);
+        }
+
+        synchronized boolean setBookmarked(long postId, boolean value) {
+            return set(bookmarked, postId, value);
+        }
+
+        private static boolean set(Roaring64NavigableMap bits, long postId, boolean value) {
+            if (bits.contains(postId) == value) {
+                return false;
+            }
+            if (value) bits.addLong(postId); else bits.removeLong(postId);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the user's flags, loading them on first use.
+     */
+    public ViewerFlags get(long userId) {
+        return flags.get(userId);
+    }
+
+    /**
+     * Records a like or unlike and returns whether the user's set changed.
+     * Loads the user's sets first if needed; a load racing with this call
+     * either already saw the row or is corrected here.
+     */
+    public boolean setLiked(long userId, long postId, boolean value) {
+        return get(userId).setLiked(postId, value);
+    }
+
+    /**
+     * Records a bookmark or unbookmark, as setLiked.
+     */
+    public boolean setBookmarked(long userId, long postId, boolean value) {
+        return get(userId).setBookmarked(postId, value);
+    }
+
+    /**
+     * Drops a user's sets, e.g. when their session expires.
+     */
+    public void evict(long userId) {
+        flags.invalidate(userId);
+    }
+
+    private ViewerFlags load(Long userId) {
+        ViewerFlags loaded = new ViewerFlags();
+        jdbcTemplate.query("SELECT post_id FROM `like` WHERE user_id = ?",
+                rs -> { loaded.setLiked(rs.getLong("post_id"), true); }, userId);
+        jdbcTemplate.query("SELECT post_id FROM bookmark WHERE user_id = ?",
+                rs -> { loaded.setBookmarked(rs.getLong("post_id"), true); }, userId);
+        return loaded;
+    }
+}
@@ -0,0 +1,129 @@
+package uga.menik.csx370.utility;
+
+/**
+ * Fixed-size ring of one author's most recent posts.
+ *
+ * Post ids and creation times live in parallel primitive arrays so a ring costs
+ * 16 bytes per slot and no per-post objects. Entries are kept sorted by
+ * (createdAt, postId) from oldest to newest; appends are almost always the
+ * newest entry, and the rare out-of-order append is insertion-sorted into place.
+ *
+ * All methods are synchronized on the ring; rings are small, so contention is per author.
+ */
+public final class AuthorPostRing {
+
+    private final long[] postIds;
+    private final long[] createdAt;
+    // Physical index of the oldest entry.
+    private int start;
+    private int size;
+    // True once older posts exist that are not held in the ring.
+    private boolean truncated;
+
+    public AuthorPostRing(int capacity) {
+        this.postIds = new long[capacity];
+        this.createdAt = new long[capacity];
+    }
+
+    /**
+     * Adds a post. When the ring is full the oldest entry is dropped, unless the
+     * new post is older than everything held, in which case it is dropped itself.
+     * Adding a post id that is already present is a no-op.
+     */
+    public synchronized void add(long postId, long time) {
+        int capacity = postIds.length;
+        // Find the logical slot the entry belongs after, scanning from the newest end.
+        int pos = size;
+        while (pos > 0) {
+            int phys = physical(pos - 1);
+            if (postIds[phys] == postId) {
+                return;
+            }
+            if (compare(createdAt[phys], postIds[phys], time, postId) < 0) {
+                break;
+            }
+            pos--;
+        }
+        for (int i = pos - 1; i >= 0; i--) {
+            if (postIds[physical(i)] == postId) {
+                return;
+            }
+        }
+
+        if (size == capacity) {
+            truncated = true;
+            if (pos == 0) {
+                // Older than everything we keep.
+                return;
+            }
+            // Drop the oldest entry; everything shifts one logical slot down.
+            start = (start + 1) % capacity;
+            size--;
+            pos--;
+        }
+
+        // Shift newer entries up by one to open logical slot pos.
+        for (int i = size; i > pos; i--) {
+            int to = physical(i);
+            int from = physical(i - 1);
+            postIds[to] = postIds[from];
+            createdAt[to] = createdAt[from];
+        }
+        int slot = physical(pos);
+        postIds[slot] = postId;
+        createdAt[slot] = time;
+        size++;
+    }
+
+    /**
+     * Marks the ring as not holding all of the author's posts.
+     */
+    public synchronized void markTruncated() {
+        truncated = true;
+    }
+
+    /**
+     * Copies up to max entries strictly older than the cursor (or all entries when
+     * after is null) into the output arrays, newest first.
+     *
+     * Returns the number copied. If the ring is truncated and fewer than max entries
+     * qualified, the result is negated minus one to signal that older posts may exist
+     * that the ring cannot supply.
+     */
+    public int copyNewestFirst(KeysetCursor after, int max, long[] idsOut, long[] timesOut) {
+        return copyNewestFirst(after, max, idsOut, timesOut, 0);
+    }
+
+    /**
+     * Like copyNewestFirst, but writes the entries from index offset of the
+     * output arrays on, so several rings can share one buffer.
+     */
+    public synchronized int copyNewestFirst(KeysetCursor after, int max, long[] idsOut, long[] timesOut, int offset) {
+        int n = 0;
+        for (int i = size - 1; i >= 0 && n < max; i--) {
+            int phys = physical(i);
+            if (after != null
+                    && compare(createdAt[phys], postIds[phys], after.getSortKey(), after.getId()) >= 0) {
+                continue;
+            }
+            idsOut[offset + n] = postIds[phys];
+            timesOut[offset + n] = createdAt[phys];
+            n++;
+        }
+        if (n < max && truncated) {
+            return -n - 1;
+        }
+        return n;
+    }
+
+    private int physical(int logical) {
+        return (start + logical) % postIds.length;
+    }
+
+    private static int compare(long timeA, long idA, long timeB, long idB) {
+        if (timeA != timeB) {
+            return Long.compare(timeA, timeB);
+        }
+        return Long.compare(idA, idB);
+    }
+}
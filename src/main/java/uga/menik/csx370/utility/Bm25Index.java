@@ -0,0 +1,244 @@
+package uga.menik.csx370.utility;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Inverted index over post text, ranked by BM25.
+ *
+ * Every added post gets a dense document number in the order it was added.
+ * Each term maps to the document numbers containing it, plus how often the
+ * term occurs in each. A query scores only the documents on its terms'
+ * lists:
+ *
+ *   score = sum over terms of idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * len / avgLen))
+ *
+ * with idf = ln(1 + (N - df + 0.5) / (df + 0.5)). Document lengths are kept
+ * so the length normalization matches what the post looked like when added.
+ *
+ * Not thread-safe; callers hold a lock around adds, searches and writes.
+ */
+public final class Bm25Index {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final class Postings {
+        int[] docs = new int[2];
+        byte[] freqs = new byte[2];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = (byte) Math.min(freq, 255);
+            size++;
+        }
+    }
+
+    private final Map<String, Postings> terms = new HashMap<>();
+
+    private long[] docPostIds = new long[1024];
+    private short[] docLengths = new short[1024];
+    private int docCount;
+    private long totalLength;
+
+    private final Roaring64NavigableMap indexed = new Roaring64NavigableMap();
+    private long maxPostId;
+
+    /**
+     * Returns the number of posts in the index.
+     */
+    public int size() {
+        return docCount;
+    }
+
+    /**
+     * Returns the largest post id in the index, 0 if it is empty.
+     */
+    public long getMaxPostId() {
+        return maxPostId;
+    }
+
+    /**
+     * Returns whether postId has been added.
+     */
+    public boolean contains(long postId) {
+        return indexed.contains(postId);
+    }
+
+    /**
+     * Adds a post. Returns false if it was already in the index.
+     */
+    public boolean add(long postId, String content) {
+        if (indexed.contains(postId)) {
+            return false;
+        }
+        List<String> tokens = TextTokenizer.tokenize(content);
+        Map<String, Integer> freqs = new HashMap<>();
+        for (String token : tokens) {
+            freqs.merge(token, 1, Integer::sum);
+        }
+
+        if (docCount == docPostIds.length) {
+            docPostIds = Arrays.copyOf(docPostIds, docCount * 2);
+            docLengths = Arrays.copyOf(docLengths, docCount * 2);
+        }
+        int doc = docCount++;
+        docPostIds[doc] = postId;
+        docLengths[doc] = (short) Math.min(tokens.size(), Short.MAX_VALUE);
+        totalLength += docLengths[doc];
+        for (Map.Entry<String, Integer> entry : freqs.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), t -> new Postings()).add(doc, entry.getValue());
+        }
+        indexed.addLong(postId);
+        maxPostId = Math.max(maxPostId, postId);
+        return true;
+    }
+
+    /**
+     * Returns the ids of the best matching posts for query, skipping the first
+     * offset and returning at most limit. Ties go to the newer post.
+     */
+    public List<Long> search(String query, int offset, int limit) {
+        List<Long> out = new ArrayList<>();
+        List<Postings> lists = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(TextTokenizer.tokenize(query))) {
+            Postings postings = terms.get(term);
+            if (postings != null) {
+                lists.add(postings);
+            }
+        }
+        if (lists.isEmpty() || docCount == 0) {
+            return out;
+        }
+
+        // Term at a time into a dense accumulator; touched remembers which documents got a score.
+        float[] scores = new float[docCount];
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        float avgLength = Math.max(1f, (float) totalLength / docCount);
+        for (Postings postings : lists) {
+            float idf = (float) Math.log(1 + (docCount - postings.size + 0.5) / (postings.size + 0.5));
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                float tf = postings.freqs[i] & 0xFF;
+                float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                if (scores[doc] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = doc;
+                }
+                scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        // Min-heap of the best offset + limit documents; its head is the weakest.
+        int want = offset + limit;
+        Comparator<Integer> weakestFirst = (a, b) -> scores[a] != scores[b]
+                ? Float.compare(scores[a], scores[b])
+                : Long.compare(docPostIds[a], docPostIds[b]);
+        PriorityQueue<Integer> heap = new PriorityQueue<>(want + 1, weakestFirst);
+        int weakest = -1;
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            if (weakest >= 0 && (scores[doc] < scores[weakest]
+                    || (scores[doc] == scores[weakest] && docPostIds[doc] < docPostIds[weakest]))) {
+                continue;
+            }
+            heap.add(doc);
+            if (heap.size() > want) {
+                heap.poll();
+            }
+            if (heap.size() == want) {
+                weakest = heap.peek();
+            }
+        }
+        int[] best = new int[heap.size()];
+        for (int i = best.length - 1; i >= 0; i--) {
+            best[i] = heap.poll();
+        }
+        for (int i = offset; i < best.length; i++) {
+            out.add(docPostIds[best[i]]);
+        }
+        return out;
+    }
+
+    /**
+     * Writes the index so readFrom can restore it.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(docCount);
+        for (int doc = 0; doc < docCount; doc++) {
+            out.writeLong(docPostIds[doc]);
+            out.writeShort(docLengths[doc]);
+        }
+        out.writeInt(terms.size());
+        for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+            Postings postings = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                out.writeInt(postings.docs[i]);
+            }
+            out.write(postings.freqs, 0, postings.size);
+        }
+    }
+
+    /**
+     * Reads an index written by writeTo.
+     *
+     * @throws IOException if the data is truncated or from another format version
+     */
+    public static Bm25Index readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported search index version " + version);
+        }
+        Bm25Index index = new Bm25Index();
+        int docCount = in.readInt();
+        index.docPostIds = new long[Math.max(1024, docCount)];
+        index.docLengths = new short[index.docPostIds.length];
+        for (int doc = 0; doc < docCount; doc++) {
+            long postId = in.readLong();
+            index.docPostIds[doc] = postId;
+            index.docLengths[doc] = in.readShort();
+            index.totalLength += index.docLengths[doc];
+            index.indexed.addLong(postId);
+            index.maxPostId = Math.max(index.maxPostId, postId);
+        }
+        index.docCount = docCount;
+        int termCount = in.readInt();
+        for (int t = 0; t < termCount; t++) {
+            String term = in.readUTF();
+            Postings postings = new Postings();
+            postings.size = in.readInt();
+            postings.docs = new int[Math.max(2, postings.size)];
+            postings.freqs = new byte[postings.docs.length];
+            for (int i = 0; i < postings.size; i++) {
+                postings.docs[i] = in.readInt();
+            }
+            in.readFully(postings.freqs, 0, postings.size);
+            index.terms.put(term, postings);
+        }
+        return index;
+    }
+}
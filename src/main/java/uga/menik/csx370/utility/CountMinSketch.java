@@ -0,0 +1,90 @@
+package uga.menik.csx370.utility;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Count-Min Sketch over int keys.
+ *
+ * depth rows of width counters; a key bumps one counter per row and is
+ * estimated by the smallest of them. Estimates never undercount, and with
+ * width = ceil(e / epsilon) and depth = ceil(ln(1 / delta)) they overcount by
+ * at most epsilon * total with probability at least 1 - delta. Memory is
+ * fixed at depth * width longs whatever the number of distinct keys.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class CountMinSketch {
+
+    // Mersenne prime 2^31 - 1 for the pairwise-independent hash family.
+    private static final long PRIME = (1L << 31) - 1;
+
+    private final int width;
+    private final long[][] counts;
+    private final long[] hashA;
+    private final long[] hashB;
+    private long total;
+
+    /**
+     * Creates a sketch for the given error and failure probability. Sketches
+     * built with the same arguments and seed can be merged.
+     */
+    public CountMinSketch(double epsilon, double delta, long seed) {
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        int depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counts = new long[depth][width];
+        this.hashA = new long[depth];
+        this.hashB = new long[depth];
+        Random random = new Random(seed);
+        for (int i = 0; i < depth; i++) {
+            hashA[i] = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+            hashB[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+    }
+
+    public void add(int key, long count) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i][bucket(i, key)] += count;
+        }
+        total += count;
+    }
+
+    public long estimate(int key) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < counts.length; i++) {
+            min = Math.min(min, counts[i][bucket(i, key)]);
+        }
+        return min;
+    }
+
+    /**
+     * Adds another sketch built with the same arguments into this one.
+     */
+    public void merge(CountMinSketch other) {
+        for (int i = 0; i < counts.length; i++) {
+            for (int j = 0; j < width; j++) {
+                counts[i][j] += other.counts[i][j];
+            }
+        }
+        total += other.total;
+    }
+
+    public void clear() {
+        for (long[] row : counts) {
+            Arrays.fill(row, 0);
+        }
+        total = 0;
+    }
+
+    /**
+     * Returns the sum of all counts added.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    private int bucket(int row, int key) {
+        long h = (hashA[row] * (key & 0xffffffffL) + hashB[row]) % PRIME;
+        return (int) (h % width);
+    }
+}
@@ -0,0 +1,115 @@
+package uga.menik.csx370.utility;
+
+import java.util.Arrays;
+
+/**
+ * Immutable directed graph over int node ids in compressed sparse row form.
+ *
+ * The neighbours of node u are targets[offsets[u] .. offsets[u + 1]), sorted
+ * ascending. Node ids index offsets directly, which suits dense
+ * auto-increment ids: the whole graph is two int arrays, degree is O(1),
+ * an edge test is a binary search of one row, and rows are read in place.
+ * Nodes past the largest id seen at build time simply have no edges.
+ */
+public final class CsrGraph {
+
+    private static final CsrGraph EMPTY = new CsrGraph(new int[] { 0 }, new int[0]);
+
+    private final int[] offsets;
+    private final int[] targets;
+
+    private CsrGraph(int[] offsets, int[] targets) {
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Returns a graph with no edges.
+     */
+    public static CsrGraph empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds the graph of edges sources[i] -> destinations[i] for i below count.
+     * The edges must be distinct; they may come in any order.
+     */
+    public static CsrGraph build(int[] sources, int[] destinations, int count) {
+        int maxNode = -1;
+        for (int i = 0; i < count; i++) {
+            maxNode = Math.max(maxNode, sources[i]);
+        }
+        int[] offsets = new int[maxNode + 2];
+        for (int i = 0; i < count; i++) {
+            offsets[sources[i] + 1]++;
+        }
+        for (int u = 0; u <= maxNode; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+        int[] next = Arrays.copyOf(offsets, offsets.length);
+        int[] targets = new int[count];
+        for (int i = 0; i < count; i++) {
+            targets[next[sources[i]]++] = destinations[i];
+        }
+        for (int u = 0; u <= maxNode; u++) {
+            Arrays.sort(targets, offsets[u], offsets[u + 1]);
+        }
+        return new CsrGraph(offsets, targets);
+    }
+
+    /**
+     * Returns one more than the largest node id with a row.
+     */
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the number of edges.
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the number of edges leaving u.
+     */
+    public int degree(int u) {
+        if (u < 0 || u >= offsets.length - 1) {
+            return 0;
+        }
+        return offsets[u + 1] - offsets[u];
+    }
+
+    /**
+     * Returns whether the edge u -> v exists.
+     */
+    public boolean hasEdge(int u, int v) {
+        if (u < 0 || u >= offsets.length - 1) {
+            return false;
+        }
+        return Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v) >= 0;
+    }
+
+    /**
+     * Returns where u's row starts in the target array; see target.
+     */
+    public int rowStart(int u) {
+        return u < 0 || u >= offsets.length - 1 ? 0 : offsets[u];
+    }
+
+    /**
+     * Returns the neighbour at position i of the target array. Node u's
+     * neighbours are target(rowStart(u)) .. target(rowStart(u) + degree(u) - 1).
+     */
+    public int target(int i) {
+        return targets[i];
+    }
+
+    /**
+     * Returns the bytes used by the two arrays.
+     */
+    public long byteSize() {
+        return 4L * (offsets.length + targets.length);
+    }
+}
@@ -0,0 +1,126 @@
+package uga.menik.csx370.utility;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Approximate per-key counts over a sliding window of daily buckets.
+ *
+ * Each day has its own Count-Min Sketch and Space-Saving summary, so memory
+ * is fixed by the window length, the sketch size and the summary capacity,
+ * however many distinct keys are seen. A query merges the sketches of the
+ * requested days, takes the keys monitored by any of those days' summaries
+ * as candidates, and ranks them by their merged estimate.
+ *
+ * All methods are synchronized.
+ */
+public final class HeavyHitterWindow {
+
+    private static final long DAY_MS = 86_400_000L;
+
+    private final double epsilon;
+    private final double delta;
+    private final long seed;
+    private final long[] slotDays;
+    private final CountMinSketch[] sketches;
+    private final SpaceSavingTopK[] summaries;
+
+    /**
+     * A ranked answer: the first size keys and estimates, highest first,
+     * each overstated by at most errorBound with the configured confidence.
+     */
+    public static final class Result {
+        public final List<Integer> keys;
+        public final List<Long> estimates;
+        public final long errorBound;
+        public final long total;
+
+        Result(List<Integer> keys, List<Long> estimates, long errorBound, long total) {
+            this.keys = keys;
+            this.estimates = estimates;
+            this.errorBound = errorBound;
+            this.total = total;
+        }
+    }
+
+    public HeavyHitterWindow(int windowDays, double epsilon, double delta, int capacity, long seed) {
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.seed = seed;
+        this.slotDays = new long[windowDays];
+        this.sketches = new CountMinSketch[windowDays];
+        this.summaries = new SpaceSavingTopK[windowDays];
+        for (int i = 0; i < windowDays; i++) {
+            slotDays[i] = -1;
+            sketches[i] = new CountMinSketch(epsilon, delta, seed);
+            summaries[i] = new SpaceSavingTopK(capacity);
+        }
+    }
+
+    public int getWindowDays() {
+        return slotDays.length;
+    }
+
+    /**
+     * Returns the probability that an estimate exceeds its error bound.
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * Adds count to key on the day containing timeMillis. Events older than
+     * the window as of nowMillis, or in the future, are ignored.
+     */
+    public synchronized void add(int key, long timeMillis, long nowMillis, long count) {
+        long day = Math.floorDiv(timeMillis, DAY_MS);
+        long today = Math.floorDiv(nowMillis, DAY_MS);
+        if (day > today || day <= today - slotDays.length) {
+            return;
+        }
+        int slot = (int) Math.floorMod(day, (long) slotDays.length);
+        if (slotDays[slot] != day) {
+            if (slotDays[slot] > day) {
+                return;
+            }
+            slotDays[slot] = day;
+            sketches[slot].clear();
+            summaries[slot].clear();
+        }
+        sketches[slot].add(key, count);
+        summaries[slot].add(key, count);
+    }
+
+    /**
+     * Returns the limit keys with the highest estimated counts over the last
+     * days days, today included.
+     */
+    public synchronized Result top(long nowMillis, int days, int limit) {
+        int span = Math.min(days, slotDays.length);
+        long today = Math.floorDiv(nowMillis, DAY_MS);
+        CountMinSketch merged = new CountMinSketch(epsilon, delta, seed);
+        Set<Integer> candidates = new HashSet<>();
+        for (long day = today - span + 1; day <= today; day++) {
+            int slot = (int) Math.floorMod(day, (long) slotDays.length);
+            if (slotDays[slot] != day) {
+                continue;
+            }
+            merged.merge(sketches[slot]);
+            candidates.addAll(summaries[slot].keys());
+        }
+
+        List<Integer> keys = new ArrayList<>(candidates);
+        keys.sort((a, b) -> Long.compare(merged.estimate(b), merged.estimate(a)));
+        if (keys.size() > limit) {
+            keys = new ArrayList<>(keys.subList(0, limit));
+        }
+        List<Long> estimates = new ArrayList<>(keys.size());
+        for (Integer key : keys) {
+            estimates.add(merged.estimate(key));
+        }
+        long total = merged.getTotal();
+        return new Result(keys, estimates, (long) Math.ceil(epsilon * total), total);
+    }
+}
@@ -0,0 +1,56 @@
+package uga.menik.csx370.utility;
+
+/**
+ * Opaque position marker for keyset (seek) pagination.
+ *
+ * A cursor is the sort key of the last row on a page plus that row's id as a
+ * tie breaker, e.g. (created_at millis, post_id). The next page is everything
+ * strictly "after" that pair in the page's sort order, so each page costs the
+ * same no matter how deep the user has scrolled.
+ *
+ * The string form is "sortKey_id" so it can travel in a URL parameter as is.
+ */
+public final class KeysetCursor {
+
+    private final long sortKey;
+    private final long id;
+
+    public KeysetCursor(long sortKey, long id) {
+        this.sortKey = sortKey;
+        this.id = id;
+    }
+
+    /**
+     * Parses a cursor from its URL form.
+     * Returns null for missing or malformed input so callers start from the first page.
+     */
+    public static KeysetCursor parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        int sep = value.indexOf('_');
+        if (sep <= 0 || sep == value.length() - 1) {
+            return null;
+        }
+        try {
+            long sortKey = Long.parseLong(value.substring(0, sep));
+            long id = Long.parseLong(value.substring(sep + 1));
+            return new KeysetCursor(sortKey, id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public long getSortKey() {
+        return sortKey;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return sortKey + "_" + id;
+    }
+}
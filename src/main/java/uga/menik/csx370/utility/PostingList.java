@@ -0,0 +1,355 @@
+package uga.menik.csx370.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted set of post ids, stored as delta-encoded varints in blocks.
+ *
+ * Ids are kept in blocks of BLOCK_SIZE. The first id of each block is kept
+ * uncompressed in a skip array, and the rest of the block is the gaps between
+ * consecutive ids as variable-length bytes, usually one or two bytes per id.
+ * A cursor seeks by galloping over the skip array and then decodes one block,
+ * so it can jump past long runs of ids without decoding them.
+ *
+ * Ids normally arrive in increasing order and are appended. An id older than
+ * the last one is merged in by re-encoding the blocks from the one it falls
+ * in onward, which only happens when posts commit out of order and is then
+ * almost always just the last block.
+ *
+ * Not thread-safe; callers hold a lock around adds and around cursor use.
+ */
+public final class PostingList {
+
+    static final int BLOCK_SIZE = 128;
+
+    private byte[] data = new byte[16];
+    private int length;
+
+    // First (smallest) id of each block and where the block's gaps start in data.
+    private long[] blockFirst = new long[4];
+    private int[] blockOffset = new int[4];
+    private int blocks;
+
+    private int size;
+    private long last = -1;
+
+    /**
+     * Returns the number of ids in the list.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the bytes used by the encoded ids and the skip array.
+     */
+    public long byteSize() {
+        return length + blocks * 12L;
+    }
+
+    /**
+     * Adds id. Returns false if it was already present.
+     */
+    public boolean add(long id) {
+        if (size > 0 && id <= last) {
+            if (contains(id)) {
+                return false;
+            }
+            // Blocks before the one id falls in are unchanged; re-encode from there on.
+            int from = id < blockFirst[0] ? 0 : floorBlock(0, blocks - 1, id);
+            long[] tail = new long[size - from * BLOCK_SIZE];
+            long[] buffer = new long[BLOCK_SIZE];
+            for (int b = from; b < blocks; b++) {
+                int count = decodeBlock(b, buffer);
+                System.arraycopy(buffer, 0, tail, (b - from) * BLOCK_SIZE, count);
+            }
+            int at = -Arrays.binarySearch(tail, id) - 1;
+            length = blockOffset[from];
+            blocks = from;
+            size = from * BLOCK_SIZE;
+            for (int i = 0; i < at; i++) {
+                append(tail[i]);
+            }
+            append(id);
+            for (int i = at; i < tail.length; i++) {
+                append(tail[i]);
+            }
+            return true;
+        }
+        append(id);
+        return true;
+    }
+
+    /**
+     * Returns whether id is in the list.
+     */
+    public boolean contains(long id) {
+        if (size == 0 || id < blockFirst[0] || id > last) {
+            return false;
+        }
+        int block = floorBlock(0, blocks - 1, id);
+        long[] buffer = new long[BLOCK_SIZE];
+        int count = decodeBlock(block, buffer);
+        return Arrays.binarySearch(buffer, 0, count, id) >= 0;
+    }
+
+    /**
+     * Returns all ids in increasing order.
+     */
+    public long[] toArray() {
+        long[] out = new long[size];
+        long[] buffer = new long[BLOCK_SIZE];
+        for (int b = 0; b < blocks; b++) {
+            int count = decodeBlock(b, buffer);
+            System.arraycopy(buffer, 0, out, b * BLOCK_SIZE, count);
+        }
+        return out;
+    }
+
+    /**
+     * Returns a cursor positioned on the largest id.
+     */
+    public Cursor descending() {
+        return new Cursor();
+    }
+
+    /**
+     * Returns up to limit ids below before that are in any of the lists,
+     * largest first.
+     */
+    public static List<Long> union(List<PostingList> lists, long before, int limit) {
+        List<Cursor> cursors = new ArrayList<>(lists.size());
+        for (PostingList list : lists) {
+            Cursor cursor = list.descending();
+            cursor.seek(before - 1);
+            cursors.add(cursor);
+        }
+        List<Long> out = new ArrayList<>();
+        while (out.size() < limit) {
+            long max = -1;
+            for (Cursor cursor : cursors) {
+                max = Math.max(max, cursor.current());
+            }
+            if (max < 0) {
+                break;
+            }
+            out.add(max);
+            for (Cursor cursor : cursors) {
+                if (cursor.current() == max) {
+                    cursor.next();
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns up to limit ids below before that are in all of the lists,
+     * largest first. The shortest list leads and the others gallop to each
+     * of its candidates.
+     */
+    public static List<Long> intersect(List<PostingList> lists, long before, int limit) {
+        List<Long> out = new ArrayList<>();
+        if (lists.isEmpty()) {
+            return out;
+        }
+        List<PostingList> bySize = new ArrayList<>(lists);
+        bySize.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Cursor[] cursors = new Cursor[bySize.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = bySize.get(i).descending();
+        }
+
+        Cursor lead = cursors[0];
+        lead.seek(before - 1);
+        long target = lead.current();
+        while (target >= 0 && out.size() < limit) {
+            boolean matched = true;
+            for (int i = 1; i < cursors.length; i++) {
+                Cursor cursor = cursors[i];
+                cursor.seek(target);
+                if (cursor.current() < 0) {
+                    return out;
+                }
+                if (cursor.current() < target) {
+                    // Skip the lead straight past everything this list lacks.
+                    lead.seek(cursor.current());
+                    target = lead.current();
+                    matched = false;
+                    break;
+                }
+            }
+            if (matched) {
+                out.add(target);
+                lead.next();
+                target = lead.current();
+            }
+        }
+        return out;
+    }
+
+    private void append(long id) {
+        if (size % BLOCK_SIZE == 0) {
+            if (blocks == blockFirst.length) {
+                blockFirst = Arrays.copyOf(blockFirst, blocks * 2);
+                blockOffset = Arrays.copyOf(blockOffset, blocks * 2);
+            }
+            blockFirst[blocks] = id;
+            blockOffset[blocks] = length;
+            blocks++;
+        } else {
+            writeVarLong(id - last);
+        }
+        last = id;
+        size++;
+    }
+
+    private void writeVarLong(long value) {
+        if (length + 10 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10));
+        }
+        while ((value & ~0x7FL) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    private int blockCount(int block) {
+        return block < blocks - 1 ? BLOCK_SIZE : size - block * BLOCK_SIZE;
+    }
+
+    /**
+     * Decodes one block into out and returns how many ids it holds.
+     */
+    private int decodeBlock(int block, long[] out) {
+        int count = blockCount(block);
+        long value = blockFirst[block];
+        out[0] = value;
+        int pos = blockOffset[block];
+        for (int i = 1; i < count; i++) {
+            long gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                gap |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += gap;
+            out[i] = value;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the last block in [lo, hi] whose first id is at most target.
+     * blockFirst[lo] must be at most target.
+     */
+    private int floorBlock(int lo, int hi, long target) {
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (blockFirst[mid] <= target) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Walks the list from the largest id down. current() is -1 once the
+     * cursor has moved past the smallest id.
+     */
+    public final class Cursor {
+        private final long[] buffer = new long[BLOCK_SIZE];
+        private int block;
+        private int index;
+        private long current = -1;
+
+        private Cursor() {
+            if (blocks > 0) {
+                load(blocks - 1);
+                index = blockCount(block) - 1;
+                current = buffer[index];
+            }
+        }
+
+        public long current() {
+            return current;
+        }
+
+        /**
+         * Moves to the next smaller id.
+         */
+        public void next() {
+            if (current < 0) {
+                return;
+            }
+            if (index > 0) {
+                current = buffer[--index];
+            } else if (block > 0) {
+                load(block - 1);
+                index = BLOCK_SIZE - 1;
+                current = buffer[index];
+            } else {
+                current = -1;
+            }
+        }
+
+        /**
+         * Moves to the largest id at most target. Never moves back up.
+         */
+        public void seek(long target) {
+            if (current <= target) {
+                return;
+            }
+            if (buffer[0] <= target) {
+                index = floorIndex(index - 1, target);
+                current = buffer[index];
+                return;
+            }
+            if (block == 0 || blockFirst[0] > target) {
+                current = -1;
+                return;
+            }
+            // Gallop down the skip array to bracket the block, then binary search.
+            int lo = block - 1;
+            int hi = lo;
+            int step = 1;
+            while (blockFirst[lo] > target) {
+                hi = lo - 1;
+                lo = Math.max(0, lo - step);
+                step <<= 1;
+            }
+            load(floorBlock(lo, hi, target));
+            index = floorIndex(blockCount(block) - 1, target);
+            current = buffer[index];
+        }
+
+        private void load(int b) {
+            decodeBlock(b, buffer);
+            block = b;
+        }
+
+        /**
+         * Returns the last index in [0, hi] of the loaded block whose id is
+         * at most target. buffer[0] must be at most target.
+         */
+        private int floorIndex(int hi, long target) {
+            int lo = 0;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (buffer[mid] <= target) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+    }
+}
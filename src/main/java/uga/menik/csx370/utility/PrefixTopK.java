@@ -0,0 +1,150 @@
+package uga.menik.csx370.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable prefix index that returns the heaviest strings starting with a prefix.
+ *
+ * The strings are kept sorted, which makes the trie implicit: the strings
+ * under any trie node, i.e. sharing a prefix, form one contiguous range of the
+ * array, found by two binary searches. Nodes with at most k strings answer by
+ * sorting their range. Larger nodes have their top k precomputed at build
+ * time, bottom-up from their children, so a lookup never visits more than
+ * k strings. Only those larger nodes are stored, which keeps the index small.
+ *
+ * Heavier strings come first; equal weights are in alphabetical order.
+ * Safe to share between threads once built.
+ */
+public final class PrefixTopK {
+
+    private final String[] strings;
+    private final long[] weights;
+    private final int k;
+
+    // Top k string indexes of every prefix with more than k strings under it.
+    private final Map<String, int[]> heavyNodes = new HashMap<>();
+
+    /**
+     * Builds the index. strings must not contain duplicates.
+     */
+    public PrefixTopK(Map<String, Long> weighted, int k) {
+        this.k = Math.max(1, k);
+        this.strings = weighted.keySet().toArray(new String[0]);
+        Arrays.sort(strings);
+        this.weights = new long[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            weights[i] = weighted.get(strings[i]);
+        }
+        if (strings.length > 0) {
+            build(0, strings.length, 0);
+        }
+    }
+
+    /**
+     * Returns the number of strings in the index.
+     */
+    public int size() {
+        return strings.length;
+    }
+
+    /**
+     * Returns the number of precomputed trie nodes.
+     */
+    public int heavyNodeCount() {
+        return heavyNodes.size();
+    }
+
+    /**
+     * Returns up to limit strings starting with prefix, heaviest first.
+     * limit is capped at the k the index was built with.
+     */
+    public List<String> top(String prefix, int limit) {
+        int lo = lowerBound(prefix);
+        int hi = lowerBound(prefix + Character.MAX_VALUE);
+        int[] best = hi - lo > k ? heavyNodes.get(prefix) : rank(lo, hi);
+        List<String> out = new ArrayList<>();
+        if (best == null) {
+            return out;
+        }
+        for (int i = 0; i < best.length && out.size() < limit; i++) {
+            out.add(strings[best[i]]);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the top k of strings[lo, hi), whose first depth characters are
+     * shared, storing it if the range is heavy.
+     */
+    private int[] build(int lo, int hi, int depth) {
+        if (hi - lo <= k) {
+            return rank(lo, hi);
+        }
+        List<Integer> candidates = new ArrayList<>();
+        int i = lo;
+        if (strings[i].length() == depth) {
+            // The prefix itself is one of the strings.
+            candidates.add(i++);
+        }
+        while (i < hi) {
+            char c = strings[i].charAt(depth);
+            int end = i + 1;
+            while (end < hi && strings[end].charAt(depth) == c) {
+                end++;
+            }
+            for (int index : build(i, end, depth + 1)) {
+                candidates.add(index);
+            }
+            i = end;
+        }
+        candidates.sort(this::compare);
+        int[] best = new int[Math.min(k, candidates.size())];
+        for (int j = 0; j < best.length; j++) {
+            best[j] = candidates.get(j);
+        }
+        heavyNodes.put(strings[lo].substring(0, depth), best);
+        return best;
+    }
+
+    /**
+     * Sorts the indexes of strings[lo, hi), heaviest first.
+     */
+    private int[] rank(int lo, int hi) {
+        List<Integer> range = new ArrayList<>(hi - lo);
+        for (int i = lo; i < hi; i++) {
+            range.add(i);
+        }
+        range.sort(this::compare);
+        int[] out = new int[range.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = range.get(i);
+        }
+        return out;
+    }
+
+    private int compare(int a, int b) {
+        // Indexes follow alphabetical order, so they break weight ties.
+        return weights[a] != weights[b] ? Long.compare(weights[b], weights[a]) : Integer.compare(a, b);
+    }
+
+    /**
+     * Returns the index of the first string not less than key.
+     */
+    private int lowerBound(String key) {
+        int lo = 0;
+        int hi = strings.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (strings[mid].compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,84 @@
+package uga.menik.csx370.utility;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Event counts per int key over a sliding window of hourly buckets.
+ *
+ * The buckets form a ring indexed by absolute hour modulo the window size;
+ * each slot remembers which hour it holds, so a slot left over from an
+ * earlier lap is cleared the first time it is reused, and is skipped by
+ * reads until then. Memory is bounded by the window size times the keys
+ * seen per hour.
+ *
+ * All methods are synchronized; writes are one per tagged post and reads
+ * touch at most one map per hour of the requested window.
+ */
+public final class SlidingWindowCounter {
+
+    private static final long HOUR_MS = 3600_000L;
+
+    private final long[] slotHours;
+    private final Map<Integer, Integer>[] slotCounts;
+
+    @SuppressWarnings("unchecked")
+    public SlidingWindowCounter(int windowHours) {
+        this.slotHours = new long[windowHours];
+        this.slotCounts = new Map[windowHours];
+        for (int i = 0; i < windowHours; i++) {
+            slotHours[i] = -1;
+            slotCounts[i] = new HashMap<>();
+        }
+    }
+
+    /**
+     * Returns how many hours the window covers.
+     */
+    public int getWindowHours() {
+        return slotHours.length;
+    }
+
+    /**
+     * Adds delta to key in the hour containing timeMillis. Events older than
+     * the window as of nowMillis, or in the future, are ignored.
+     */
+    public synchronized void add(int key, long timeMillis, long nowMillis, int delta) {
+        long hour = Math.floorDiv(timeMillis, HOUR_MS);
+        long nowHour = Math.floorDiv(nowMillis, HOUR_MS);
+        if (hour > nowHour || hour <= nowHour - slotHours.length) {
+            return;
+        }
+        int slot = (int) Math.floorMod(hour, (long) slotHours.length);
+        if (slotHours[slot] != hour) {
+            if (slotHours[slot] > hour) {
+                // The slot already holds a newer hour; this event fell out of the window.
+                return;
+            }
+            slotHours[slot] = hour;
+            slotCounts[slot].clear();
+        }
+        slotCounts[slot].merge(key, delta, Integer::sum);
+    }
+
+    /**
+     * Sums every key over the most recent hours buckets ending at the hour
+     * containing nowMillis. Keys whose sum is not positive are left out.
+     */
+    public synchronized Map<Integer, Long> sum(long nowMillis, int hours) {
+        int span = Math.min(hours, slotHours.length);
+        long nowHour = Math.floorDiv(nowMillis, HOUR_MS);
+        Map<Integer, Long> totals = new HashMap<>();
+        for (long hour = nowHour - span + 1; hour <= nowHour; hour++) {
+            int slot = (int) Math.floorMod(hour, (long) slotHours.length);
+            if (slotHours[slot] != hour) {
+                continue;
+            }
+            for (Map.Entry<Integer, Integer> entry : slotCounts[slot].entrySet()) {
+                totals.merge(entry.getKey(), (long) entry.getValue(), Long::sum);
+            }
+        }
+        totals.values().removeIf(v -> v <= 0);
+        return totals;
+    }
+}
@@ -0,0 +1,60 @@
+package uga.menik.csx370.utility;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Space-Saving heavy-hitter summary over int keys.
+ *
+ * Monitors at most capacity keys. A key that is not monitored replaces the
+ * one with the smallest count and inherits that count, so any key whose true
+ * count exceeds total / capacity is guaranteed to be monitored. Memory is
+ * fixed by capacity.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class SpaceSavingTopK {
+
+    private final int capacity;
+    private final Map<Integer, Long> counts;
+
+    public SpaceSavingTopK(int capacity) {
+        this.capacity = capacity;
+        this.counts = new HashMap<>(capacity * 2);
+    }
+
+    public void add(int key, long count) {
+        Long current = counts.get(key);
+        if (current != null) {
+            counts.put(key, current + count);
+            return;
+        }
+        if (counts.size() < capacity) {
+            counts.put(key, count);
+            return;
+        }
+        // Evict the smallest counter; the newcomer takes over its count.
+        int minKey = 0;
+        long min = Long.MAX_VALUE;
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            if (entry.getValue() < min) {
+                min = entry.getValue();
+                minKey = entry.getKey();
+            }
+        }
+        counts.remove(minKey);
+        counts.put(key, min + count);
+    }
+
+    /**
+     * Returns the keys currently monitored.
+     */
+    public Set<Integer> keys() {
+        return counts.keySet();
+    }
+
+    public void clear() {
+        counts.clear();
+    }
+}
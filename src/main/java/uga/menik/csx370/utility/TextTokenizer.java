@@ -0,0 +1,57 @@
+package uga.menik.csx370.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits post text into search terms.
+ *
+ * A term is a run of letters or digits, lowercased. Hashtag and mention
+ * markers are separators, so "#Java" and "java" are the same term. Single
+ * characters and a few very common English words are dropped, since they
+ * match almost every post and only slow queries down.
+ */
+public final class TextTokenizer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into",
+            "is", "it", "no", "not", "of", "on", "or", "so", "such", "that", "the", "their",
+            "then", "there", "these", "they", "this", "to", "was", "will", "with");
+
+    // Longer terms are cut to this many characters.
+    private static final int MAX_TERM_LENGTH = 32;
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * Returns the terms of text in order, repeats included.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i - start < 2) {
+                continue;
+            }
+            String term = text.substring(start, Math.min(i, start + MAX_TERM_LENGTH)).toLowerCase(Locale.ROOT);
+            if (!STOP_WORDS.contains(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,282 @@
+package uga.menik.csx370.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typo-tolerant prefix search over short names.
+ *
+ * Every entry has a few terms (e.g. username, first name, last name). Each
+ * term is lowercased, reduced to letters and digits, and broken into the
+ * trigrams of "$$" + term, so the leading trigrams also encode the first one
+ * and two characters. Each trigram maps to the entries containing it.
+ *
+ * A query word q matches a term when q is within maxEdits(q) edits (insert,
+ * delete, substitute or swap two neighbours) of some prefix of the term.
+ * One edit breaks at most four of q's trigrams (a swap touches the four
+ * trigrams covering either character; the other edits at most three), so
+ * candidates are the entries sharing at least |q| - 4 * maxEdits(q) of them
+ * (at least one), and only those are checked with an edit distance. Words of up to two
+ * characters must match exactly, three to five allow one edit, longer words
+ * two. Every query word has to match some term of the entry.
+ *
+ * Not thread-safe; callers hold a lock around adds and searches.
+ */
+public final class TrigramIndex {
+
+    /**
+     * A matching entry and the total edits its best match needed.
+     */
+    public static final class Match {
+        public final int id;
+        public final int edits;
+
+        Match(int id, int edits) {
+            this.id = id;
+            this.edits = edits;
+        }
+    }
+
+    private static final class Postings {
+        int[] docs = new int[2];
+        int size;
+
+        void add(int doc) {
+            // One entry can repeat a trigram across its terms; docs are added in order.
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    private final Map<String, Postings> trigrams = new HashMap<>();
+
+    // Dense document numbers in the order entries were added.
+    private final Map<Integer, Integer> docsById = new HashMap<>();
+    private int[] docIds = new int[1024];
+    private String[][] docTerms = new String[1024][];
+    private int docCount;
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        return docCount;
+    }
+
+    /**
+     * Adds an entry. Returns false if id was already added.
+     */
+    public boolean add(int id, String... terms) {
+        if (docsById.containsKey(id)) {
+            return false;
+        }
+        List<String> normalized = new ArrayList<>();
+        for (String term : terms) {
+            String n = normalize(term);
+            if (!n.isEmpty()) {
+                normalized.add(n);
+            }
+        }
+        if (docCount == docIds.length) {
+            docIds = Arrays.copyOf(docIds, docCount * 2);
+            docTerms = Arrays.copyOf(docTerms, docCount * 2);
+        }
+        int doc = docCount++;
+        docIds[doc] = id;
+        docTerms[doc] = normalized.toArray(new String[0]);
+        docsById.put(id, doc);
+        for (String term : docTerms[doc]) {
+            for (String trigram : trigramsOf(term)) {
+                trigrams.computeIfAbsent(trigram, t -> new Postings()).add(doc);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the entries matching all words of query, in the order they were
+     * added. If at least enough entries match every word exactly (as a
+     * prefix), only those are returned: they outrank any typo match, and
+     * skipping the edit distances is much cheaper for common prefixes.
+     * An empty query matches nothing.
+     */
+    public List<Match> search(String query, int enough) {
+        List<String> words = new ArrayList<>();
+        for (String word : query.split("\\s+")) {
+            String n = normalize(word);
+            if (!n.isEmpty()) {
+                words.add(n);
+            }
+        }
+        if (words.isEmpty() || docCount == 0) {
+            return new ArrayList<>();
+        }
+        List<Match> exact = search(words, false);
+        return exact.size() >= enough ? exact : search(words, true);
+    }
+
+    private List<Match> search(List<String> words, boolean tolerant) {
+        List<Match> out = new ArrayList<>();
+        int[] edits = null;
+        int[] docs = null;
+        int docsSize = 0;
+        for (String word : words) {
+            int maxEdits = tolerant ? maxEdits(word) : 0;
+            List<String> grams = trigramsOf(word);
+            int needed = Math.max(1, grams.size() - 4 * maxEdits);
+
+            // Count shared trigrams in a dense accumulator; touched remembers which documents got one.
+            short[] shared = new short[docCount];
+            int[] touched = new int[16];
+            int touchedCount = 0;
+            for (String gram : grams) {
+                Postings postings = trigrams.get(gram);
+                if (postings == null) {
+                    continue;
+                }
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    if (shared[doc]++ == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = doc;
+                    }
+                }
+            }
+
+            int[] nextDocs = new int[touchedCount];
+            int[] nextEdits = new int[touchedCount];
+            int nextSize = 0;
+            Arrays.sort(touched, 0, touchedCount);
+            int j = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (shared[doc] < needed) {
+                    continue;
+                }
+                int previousEdits = 0;
+                if (docs != null) {
+                    // Keep only documents every earlier word matched.
+                    while (j < docsSize && docs[j] < doc) {
+                        j++;
+                    }
+                    if (j == docsSize || docs[j] != doc) {
+                        continue;
+                    }
+                    previousEdits = edits[j];
+                }
+                int best = maxEdits + 1;
+                for (String term : docTerms[doc]) {
+                    if (term.startsWith(word)) {
+                        best = 0;
+                        break;
+                    }
+                }
+                for (int t = 0; t < docTerms[doc].length && best > 0; t++) {
+                    best = Math.min(best, prefixDistance(word, docTerms[doc][t], maxEdits));
+                }
+                if (best <= maxEdits) {
+                    nextDocs[nextSize] = doc;
+                    nextEdits[nextSize] = previousEdits + best;
+                    nextSize++;
+                }
+            }
+            docs = nextDocs;
+            edits = nextEdits;
+            docsSize = nextSize;
+            if (docsSize == 0) {
+                return out;
+            }
+        }
+        for (int i = 0; i < docsSize; i++) {
+            out.add(new Match(docIds[docs[i]], edits[i]));
+        }
+        return out;
+    }
+
+    private static int maxEdits(String word) {
+        return word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Lowercases text and drops everything but letters and digits.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toLowerCase(c));
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns the trigrams of "$$" + term, one per character of term.
+     */
+    private static List<String> trigramsOf(String term) {
+        String padded = "$$" + term;
+        List<String> out = new ArrayList<>(term.length());
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            out.add(padded.substring(i, i + 3));
+        }
+        return out;
+    }
+
+    /**
+     * Returns the fewest edits turning word into some prefix of term, or
+     * limit + 1 if that takes more than limit. Swapping two neighbouring
+     * characters counts as one edit.
+     */
+    static int prefixDistance(String word, String term, int limit) {
+        int n = word.length();
+        int m = term.length();
+        // Rows for word[0, i - 2), word[0, i - 1) and word[0, i) against every prefix of term.
+        int[] older = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = word.charAt(i - 1) == term.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && word.charAt(i - 1) == term.charAt(j - 2)
+                        && word.charAt(i - 2) == term.charAt(j - 1)) {
+                    d = Math.min(d, older[j - 2] + 1);
+                }
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = older;
+            older = previous;
+            previous = current;
+            current = swap;
+        }
+        // previous is the full word's row; any prefix of term may end the match.
+        int best = limit + 1;
+        for (int j = 0; j <= m; j++) {
+            best = Math.min(best, previous[j]);
+        }
+        return best;
+    }
+}
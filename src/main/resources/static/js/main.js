@@ -20,4 +20,97 @@ document.addEventListener('DOMContentLoaded', function () {
             }
         });
     }
+
+    // hashtag-autocomplete fields suggest hashtags for the word being typed.
+    for (var field of document.getElementsByClassName('hashtag-autocomplete')) {
+        attachHashtagSuggestions(field);
+    }
 });
+
+// Shows a list of hashtags under field that start with the word being typed,
+// fetched from /hashtags/suggest. Choosing one replaces that word.
+function attachHashtagSuggestions(field) {
+    var list = document.createElement('ul');
+    list.className = 'suggestions';
+    list.hidden = true;
+    field.parentNode.appendChild(list);
+
+    var timer = null;
+    var latest = 0; // Only the newest request may fill the list.
+    var active = -1;
+
+    function currentWord() {
+        var words = field.value.split(/\s+/);
+        return words[words.length - 1];
+    }
+
+    function close() {
+        list.hidden = true;
+        list.innerHTML = '';
+        active = -1;
+    }
+
+    function choose(tag) {
+        var value = field.value;
+        field.value = value.substring(0, value.length - currentWord().length) + '#' + tag + ' ';
+        close();
+        field.focus();
+    }
+
+    function highlight(index) {
+        var items = list.children;
+        if (items.length === 0) {
+            return;
+        }
+        active = (index + items.length) % items.length;
+        for (var i = 0; i < items.length; i++) {
+            items[i].classList.toggle('active', i === active);
+        }
+    }
+
+    field.addEventListener('input', function () {
+        clearTimeout(timer);
+        var prefix = currentWord().replace(/^#/, '');
+        if (prefix.length === 0) {
+            close();
+            return;
+        }
+        // Wait for a pause in typing instead of asking on every keystroke.
+        timer = setTimeout(function () {
+            var request = ++latest;
+            fetch('/hashtags/suggest?prefix=' + encodeURIComponent(prefix))
+                .then(function (response) { return response.ok ? response.json() : []; })
+                .then(function (tags) {
+                    if (request !== latest) {
+                        return;
+                    }
+                    close();
+                    for (var tag of tags) {
+                        var item = document.createElement('li');
+                        item.textContent = '#' + tag;
+                        item.addEventListener('mousedown', choose.bind(null, tag));
+                        list.appendChild(item);
+                    }
+                    list.hidden = tags.length === 0;
+                })
+                .catch(function (error) { console.log(error); });
+        }, 120);
+    });
+
+    field.addEventListener('keydown', function (e) {
+        if (list.hidden) {
+            return;
+        }
+        if (e.key === 'ArrowDown' || e.key === 'ArrowUp') {
+            e.preventDefault();
+            highlight(active + (e.key === 'ArrowDown' ? 1 : -1));
+        } else if (e.key === 'Enter' && active >= 0) {
+            e.preventDefault(); // Pick the suggestion instead of submitting.
+            choose(list.children[active].textContent.substring(1));
+        } else if (e.key === 'Escape') {
+            close();
+        }
+    });
+
+    field.addEventListener('blur', close);
+}
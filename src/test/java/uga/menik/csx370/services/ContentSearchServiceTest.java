@@ -0,0 +1,126 @@
+package uga.menik.csx370.services;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+
+/**
+ * Saving the content search index and loading it back at startup.
+ */
+public class ContentSearchServiceTest extends TestCase {
+
+    private static final String[] QUERIES = { "kayak", "river trip", "mountain" };
+
+    private Path dir;
+    private Path indexFile;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("search-index");
+        indexFile = dir.resolve("search-index.bin");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(indexFile);
+        Files.deleteIfExists(dir.resolve("search-index.bin.tmp"));
+        Files.deleteIfExists(dir);
+    }
+
+    private static List<Object[]> posts() {
+        List<Object[]> posts = new ArrayList<>();
+        posts.add(new Object[] { 1L, "Kayak trip down the river" });
+        posts.add(new Object[] { 2L, "River river river, all day on the river" });
+        posts.add(new Object[] { 3L, "Mountain hike, then a kayak" });
+        posts.add(new Object[] { 4L, "Packing for the mountain trip" });
+        return posts;
+    }
+
+    /**
+     * Returns a service whose database holds posts, and counts how many rows
+     * its warm-up read from there.
+     */
+    private ContentSearchService service(List<Object[]> posts, int[] rowsRead) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+            @Override
+            public void query(String sql, RowCallbackHandler handler, Object... args) {
+                long after = (Long) args[0];
+                for (Object[] post : posts) {
+                    if ((Long) post[0] <= after) {
+                        continue;
+                    }
+                    rowsRead[0]++;
+                    try {
+                        handler.processRow(resultSet(post));
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        };
+        return new ContentSearchService(jdbcTemplate, new SimpleMeterRegistry(), true,
+                indexFile.toString(), 1000, 60);
+    }
+
+    private static ResultSet resultSet(Object[] post) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, args) ->
+                        "post_id".equals(args[0]) ? post[0] : post[1]);
+    }
+
+    private static List<List<Long>> results(ContentSearchService service) {
+        List<List<Long>> results = new ArrayList<>();
+        for (String query : QUERIES) {
+            results.add(service.search(query, 0, 10));
+        }
+        return results;
+    }
+
+    public void testSavedIndexIsLoadedBack() {
+        int[] rowsRead = { 0 };
+        ContentSearchService first = service(posts(), rowsRead);
+        first.warm();
+        first.addPost(5, "Kayak rental by the river");
+        first.saveOnShutdown();
+        assertTrue(Files.exists(indexFile));
+        List<List<Long>> expected = results(first);
+
+        // Every saved post comes from the file; only the newer one is read from the database.
+        List<Object[]> posts = posts();
+        posts.add(new Object[] { 5L, "Kayak rental by the river" });
+        posts.add(new Object[] { 6L, "Mountain kayak trip" });
+        rowsRead[0] = 0;
+        ContentSearchService second = service(posts, rowsRead);
+        second.warm();
+        assertEquals(1, rowsRead[0]);
+
+        first.addPost(6, "Mountain kayak trip");
+        assertEquals(results(first), results(second));
+        assertFalse(expected.equals(results(second)));
+    }
+
+    public void testUnreadableFileRebuildsFromDatabase() throws IOException {
+        Files.write(indexFile, new byte[] { 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 99 });
+        int[] rowsRead = { 0 };
+        ContentSearchService service = service(posts(), rowsRead);
+        service.warm();
+        assertEquals(posts().size(), rowsRead[0]);
+
+        int[] fresh = { 0 };
+        Files.delete(indexFile);
+        ContentSearchService rebuilt = service(posts(), fresh);
+        rebuilt.warm();
+        assertEquals(results(rebuilt), results(service));
+    }
+}
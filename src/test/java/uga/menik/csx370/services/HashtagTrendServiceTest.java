@@ -0,0 +1,105 @@
+package uga.menik.csx370.services;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import junit.framework.TestCase;
+
+/**
+ * Warm-up replay of HashtagTrendService: every post is counted once, whether
+ * the warm-up queries, the buffered replay or both saw it.
+ */
+public class HashtagTrendServiceTest extends TestCase {
+
+    private static final String[] HOURLY_COLUMNS = { "hashtag_id", "hour_start", "uses" };
+    private static final String[] RECENT_COLUMNS = { "post_id", "hashtag_id", "created_at" };
+
+    // What the stub database returns for the hourly and the per-post warm-up query.
+    private final List<Object[]> hourlyRows = new ArrayList<>();
+    private final List<Object[]> recentRows = new ArrayList<>();
+
+    private HashtagTrendService service() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+            @Override
+            public void query(String sql, RowCallbackHandler handler, Object... args) {
+                boolean hourly = sql.contains("GROUP BY");
+                for (Object[] row : hourly ? hourlyRows : recentRows) {
+                    try {
+                        handler.processRow(resultSet(hourly ? HOURLY_COLUMNS : RECENT_COLUMNS, row));
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        };
+        HashtagDictionary dictionary = new HashtagDictionary(jdbcTemplate, new SimpleMeterRegistry());
+        dictionary.register(1, "java");
+        return new HashtagTrendService(jdbcTemplate, dictionary, true, 720, 60, false, 0.001, 0.01, 200);
+    }
+
+    private static ResultSet resultSet(String[] columns, Object[] row) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+                    Object value = row[Arrays.asList(columns).indexOf((String) args[0])];
+                    switch (method.getName()) {
+                        case "getInt":
+                            return ((Number) value).intValue();
+                        case "getLong":
+                            return ((Number) value).longValue();
+                        default:
+                            return value;
+                    }
+                });
+    }
+
+    private static long secondsAgo(int seconds) {
+        return System.currentTimeMillis() / 1000 * 1000 - seconds * 1000L;
+    }
+
+    private static long uses(HashtagTrendService service) {
+        List<TrendingService.TagTrend> top = service.getTopHashtags(1, 10);
+        assertEquals(1, top.size());
+        return top.get(0).usageCount;
+    }
+
+    public void testBufferedPostOlderThanGraceIsNotCountedTwice() {
+        // Posted and reported long before warm-up ran; the hourly query counts it.
+        long createdAt = secondsAgo(600);
+        hourlyRows.add(new Object[] { 1, new Timestamp(createdAt), 1 });
+        HashtagTrendService service = service();
+        service.recordPost(10, List.of(1), createdAt);
+        service.warm();
+        assertEquals(1, uses(service));
+    }
+
+    public void testBufferedRecentPostSeenByWarmUpIsNotCountedTwice() {
+        long createdAt = secondsAgo(1);
+        recentRows.add(new Object[] { 10L, 1, new Timestamp(createdAt) });
+        HashtagTrendService service = service();
+        service.recordPost(10, List.of(1), createdAt);
+        service.warm();
+        assertEquals(1, uses(service));
+
+        // A late second report of the same post is ignored too.
+        service.recordPost(10, List.of(1), createdAt);
+        assertEquals(1, uses(service));
+    }
+
+    public void testBufferedRecentPostMissedByWarmUpIsReplayed() {
+        // Committed after the per-post query ran, e.g. with a lower id than posts it saw.
+        recentRows.add(new Object[] { 11L, 1, new Timestamp(secondsAgo(2)) });
+        HashtagTrendService service = service();
+        service.recordPost(10, List.of(1), secondsAgo(3));
+        service.warm();
+        assertEquals(2, uses(service));
+    }
+}
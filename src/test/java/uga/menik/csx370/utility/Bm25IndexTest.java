@@ -0,0 +1,116 @@
+package uga.menik.csx370.utility;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Ranking, paging and the on-disk format of Bm25Index.
+ */
+public class Bm25IndexTest extends TestCase {
+
+    private static final String[] QUERIES = { "kayak", "river trip", "kayak river", "mountain", "nothing here" };
+
+    private static Bm25Index sample() {
+        Bm25Index index = new Bm25Index();
+        index.add(1, "Kayak trip down the river");
+        index.add(2, "River river river, all day on the river");
+        index.add(3, "Mountain hike, then a kayak");
+        index.add(4, "#kayak #kayak #kayak");
+        index.add(5, "Packing for the mountain trip");
+        return index;
+    }
+
+    private static byte[] write(Bm25Index index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            index.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Bm25Index read(byte[] bytes) throws IOException {
+        return Bm25Index.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    public void testRanksByTermFrequencyAndLength() {
+        Bm25Index index = sample();
+        // 4 repeats the term; 3 has three terms ("then" is a stop word), 1 has four.
+        assertEquals(Arrays.asList(4L, 3L, 1L), index.search("kayak", 0, 10));
+        assertEquals(2L, (long) index.search("river", 0, 10).get(0));
+        assertTrue(index.search("nothing here", 0, 10).isEmpty());
+    }
+
+    public void testRoundTripGivesSameResults() throws IOException {
+        Bm25Index index = sample();
+        Bm25Index loaded = read(write(index));
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.getMaxPostId(), loaded.getMaxPostId());
+        for (String query : QUERIES) {
+            assertEquals(query, index.search(query, 0, 10), loaded.search(query, 0, 10));
+        }
+        assertTrue(loaded.contains(3));
+        assertFalse(loaded.add(3, "already there"));
+
+        // A loaded index keeps taking posts like the original.
+        index.add(6, "kayak on the river");
+        assertTrue(loaded.add(6, "kayak on the river"));
+        for (String query : QUERIES) {
+            assertEquals(query, index.search(query, 0, 10), loaded.search(query, 0, 10));
+        }
+    }
+
+    public void testRoundTripOfEmptyIndex() throws IOException {
+        Bm25Index loaded = read(write(new Bm25Index()));
+        assertEquals(0, loaded.size());
+        assertTrue(loaded.search("kayak", 0, 10).isEmpty());
+    }
+
+    public void testOtherVersionThrows() throws IOException {
+        byte[] bytes = write(sample());
+        bytes[3]++;
+        try {
+            read(bytes);
+            fail("read an index with another format version");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testTruncatedDataThrows() throws IOException {
+        byte[] bytes = write(sample());
+        try {
+            read(Arrays.copyOf(bytes, bytes.length - 3));
+            fail("read a truncated index");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testPagingThroughTiesIsStableNewestFirst() {
+        Bm25Index index = new Bm25Index();
+        // Same text, so every post has the same score; add out of id order.
+        long[] ids = { 7, 3, 12, 1, 9, 4, 11, 2, 10, 5, 8, 6 };
+        for (long id : ids) {
+            index.add(id, "canoe");
+        }
+        List<Long> all = index.search("canoe", 0, 100);
+        assertEquals(Arrays.asList(12L, 11L, 10L, 9L, 8L, 7L, 6L, 5L, 4L, 3L, 2L, 1L), all);
+
+        List<Long> paged = new ArrayList<>();
+        for (int offset = 0; offset < ids.length + 5; offset += 5) {
+            paged.addAll(index.search("canoe", offset, 5));
+        }
+        assertEquals(all, paged);
+
+        // A stronger match still ranks above every tie.
+        index.add(0, "canoe canoe");
+        assertEquals(Arrays.asList(0L, 12L, 11L), index.search("canoe", 0, 3));
+        assertEquals(Arrays.asList(10L, 9L, 8L), index.search("canoe", 3, 3));
+    }
+}
@@ -0,0 +1,174 @@
+package uga.menik.csx370.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+/**
+ * PostingList against a plain TreeSet: appends, out-of-order inserts, cursor
+ * seeks across blocks, and the AND/OR merges hashtag search runs on.
+ */
+public class PostingListTest extends TestCase {
+
+    private static final int BLOCK = PostingList.BLOCK_SIZE;
+
+    private static PostingList listOf(NavigableSet<Long> ids) {
+        PostingList list = new PostingList();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static void assertSameIds(NavigableSet<Long> expected, PostingList list) {
+        assertEquals(expected.size(), list.size());
+        long[] ids = list.toArray();
+        int i = 0;
+        for (long id : expected) {
+            assertEquals(id, ids[i++]);
+        }
+        PostingList.Cursor cursor = list.descending();
+        Iterator<Long> descending = expected.descendingIterator();
+        while (descending.hasNext()) {
+            assertEquals((long) descending.next(), cursor.current());
+            cursor.next();
+        }
+        assertEquals(-1, cursor.current());
+    }
+
+    public void testAppendAcrossBlocks() {
+        NavigableSet<Long> expected = new TreeSet<>();
+        PostingList list = new PostingList();
+        for (long id = 5; expected.size() < 3 * BLOCK + 7; id += 3) {
+            assertTrue(list.add(id));
+            expected.add(id);
+        }
+        assertFalse(list.add(expected.last()));
+        assertSameIds(expected, list);
+    }
+
+    public void testInsertIntoMiddleOfBlocks() {
+        NavigableSet<Long> expected = new TreeSet<>();
+        for (long id = 0; id < 3 * BLOCK * 10; id += 10) {
+            expected.add(id);
+        }
+        PostingList list = listOf(expected);
+
+        // Into the first, a middle and the last block, before the first id, and at a block boundary.
+        long[] late = { 15, BLOCK * 10 + 55, 3 * BLOCK * 10 - 5, BLOCK * 10 - 1, 2 * BLOCK * 10 + 1 };
+        for (long id : late) {
+            assertTrue(list.add(id));
+            expected.add(id);
+            assertSameIds(expected, list);
+        }
+        assertFalse(list.add(15));
+        assertFalse(list.add(BLOCK * 10));
+        for (long id = -1; id <= expected.last() + 1; id++) {
+            assertEquals("contains " + id, expected.contains(id), list.contains(id));
+        }
+    }
+
+    public void testRandomOutOfOrderAdds() {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 50; trial++) {
+            NavigableSet<Long> expected = new TreeSet<>();
+            PostingList list = new PostingList();
+            long next = 1;
+            for (int i = 0; i < 4 * BLOCK; i++) {
+                // Mostly increasing, with the occasional late commit of an older id.
+                long id = random.nextInt(8) == 0 ? random.nextInt((int) next) : (next += 1 + random.nextInt(50));
+                assertEquals(expected.add(id), list.add(id));
+            }
+            assertSameIds(expected, list);
+        }
+    }
+
+    public void testSeekAcrossBlocks() {
+        NavigableSet<Long> expected = new TreeSet<>();
+        for (long id = 100; expected.size() < 5 * BLOCK; id += 7) {
+            expected.add(id);
+        }
+        PostingList list = listOf(expected);
+        long[] ids = list.toArray();
+
+        // Every target around each block's first and last id.
+        List<Long> targets = new ArrayList<>();
+        for (int b = 0; b < 5; b++) {
+            long first = ids[b * BLOCK];
+            long last = ids[b * BLOCK + BLOCK - 1];
+            targets.addAll(Arrays.asList(first - 1, first, first + 1, last - 1, last, last + 1));
+        }
+        targets.addAll(Arrays.asList(0L, 99L, Long.MAX_VALUE - 1));
+        for (long target : targets) {
+            PostingList.Cursor cursor = list.descending();
+            cursor.seek(target);
+            Long floor = expected.floor(target);
+            assertEquals("seek " + target, floor == null ? -1 : floor, cursor.current());
+        }
+
+        // Successive seeks downwards, skipping whole blocks, never move back up.
+        PostingList.Cursor cursor = list.descending();
+        for (long target = expected.last(); target >= 0; target -= 3 * BLOCK + 11) {
+            cursor.seek(target);
+            Long floor = expected.floor(target);
+            assertEquals("seek " + target, floor == null ? -1 : floor, cursor.current());
+        }
+        cursor.seek(expected.last());
+        assertTrue(cursor.current() < expected.last());
+    }
+
+    public void testUnionAndIntersectWithBefore() {
+        Random random = new Random(23);
+        for (int trial = 0; trial < 30; trial++) {
+            List<NavigableSet<Long>> sets = new ArrayList<>();
+            List<PostingList> lists = new ArrayList<>();
+            for (int l = 0; l < 3; l++) {
+                NavigableSet<Long> ids = new TreeSet<>();
+                int size = random.nextInt(3 * BLOCK);
+                while (ids.size() < size) {
+                    ids.add((long) random.nextInt(4 * BLOCK));
+                }
+                sets.add(ids);
+                lists.add(listOf(ids));
+            }
+            long before = random.nextInt(5 * BLOCK);
+            int limit = 1 + random.nextInt(2 * BLOCK);
+
+            NavigableSet<Long> any = new TreeSet<>();
+            NavigableSet<Long> all = new TreeSet<>(sets.get(0));
+            for (NavigableSet<Long> ids : sets) {
+                any.addAll(ids);
+                all.retainAll(ids);
+            }
+            assertEquals(firstBelow(any, before, limit), PostingList.union(lists, before, limit));
+            assertEquals(firstBelow(all, before, limit), PostingList.intersect(lists, before, limit));
+        }
+    }
+
+    public void testIntersectWithEmptyList() {
+        NavigableSet<Long> ids = new TreeSet<>(Arrays.asList(1L, 2L, 3L));
+        List<PostingList> lists = Arrays.asList(listOf(ids), new PostingList());
+        assertTrue(PostingList.intersect(lists, 10, 10).isEmpty());
+        assertEquals(Arrays.asList(3L, 2L, 1L), PostingList.union(lists, 10, 10));
+    }
+
+    /**
+     * Returns up to limit ids below before, largest first.
+     */
+    private static List<Long> firstBelow(NavigableSet<Long> ids, long before, int limit) {
+        List<Long> out = new ArrayList<>();
+        for (long id : ids.headSet(before, false).descendingSet()) {
+            if (out.size() == limit) {
+                break;
+            }
+            out.add(id);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,50 @@
+package uga.menik.csx370.utility;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Typo tolerance of TrigramIndex.
+ */
+public class TrigramIndexTest extends TestCase {
+
+    private TrigramIndex index() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(1, "jsmith", "James", "Smith");
+        index.add(2, "mjohnson", "Mary", "Johnson");
+        return index;
+    }
+
+    private static void assertMatches(List<TrigramIndex.Match> matches, int id, int edits) {
+        assertEquals(1, matches.size());
+        assertEquals(id, matches.get(0).id);
+        assertEquals(edits, matches.get(0).edits);
+    }
+
+    public void testExactPrefix() {
+        assertMatches(index().search("jam", 1), 1, 0);
+        assertMatches(index().search("mary john", 1), 2, 0);
+    }
+
+    public void testSwapWithinFirstThreeCharacters() {
+        // A swap breaks four trigrams; "jmaes" shares only "$$j" with "james".
+        assertMatches(index().search("jmaes", 1), 1, 1);
+        assertMatches(index().search("mray", 1), 2, 1);
+    }
+
+    public void testSwapNearTheEnd() {
+        assertMatches(index().search("jamse", 1), 1, 1);
+        assertMatches(index().search("smtih", 1), 1, 1);
+    }
+
+    public void testSubstitutionInsertionAndDeletion() {
+        assertMatches(index().search("jomes", 1), 1, 1);
+        assertMatches(index().search("jaames", 1), 1, 1);
+        assertMatches(index().search("jmes", 1), 1, 1);
+    }
+
+    public void testShortWordsMustMatchExactly() {
+        assertTrue(index().search("jx", 1).isEmpty());
+    }
+}